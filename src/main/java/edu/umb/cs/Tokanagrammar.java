@@ -66,6 +66,7 @@ public class Tokanagrammar extends Application{
         try {
             // start all back end services
             APIs.start();
+            GUI.setSession(APIs.newSession());
 
             Tokanagrammar.primaryStage = primaryStage;
 
@@ -117,8 +118,9 @@ public class Tokanagrammar extends Application{
             primaryStage.show();
             
             GUI gui = GUI.getInstance();
-            gui.setCurCategories(APIs.getCategories());
+            // the puzzles are prefetched with the difficulty set by then
             gui.setCurDifficulty(DEFAULT_DIFFICULTY);
+            gui.setCurCategories(APIs.getCategorySummaries());
             gui.gameState_initGUI();
             
         } catch (Exception ex) {
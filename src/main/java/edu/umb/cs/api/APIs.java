@@ -21,18 +21,24 @@
 
 package edu.umb.cs.api;
 
+import edu.umb.cs.api.service.CatalogSync;
+import edu.umb.cs.api.service.CompileCache;
 import edu.umb.cs.api.service.DatabaseService;
+import edu.umb.cs.api.service.GameRecorder;
+import edu.umb.cs.api.service.PuzzlePrefetcher;
 import edu.umb.cs.entity.Category;
+import edu.umb.cs.entity.Game;
 import edu.umb.cs.entity.Puzzle;
 import edu.umb.cs.entity.User;
+import edu.umb.cs.parser.BracingStyle;
 import edu.umb.cs.parser.InternalException;
 import edu.umb.cs.source.*;
-import edu.umb.cs.source.std.Utils;
+import edu.umb.cs.source.std.JavaSyntaxChecker;
+import edu.umb.cs.source.std.WorkerPool;
 import java.io.*;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.List;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -95,34 +101,15 @@ public class APIs
         
         System.out.println("\n=================================");
         System.out.println("Application started on: " + new Date());
+        if (PERSIST_COMPILE_CACHE)
+            compileCache.load(new File(COMPILE_CACHE_FILE));
         DatabaseService.openConnection(PRODUCTION_DB);
+        gameRecorder.start();
         
-        // TEMP remoe this when we have the 'real' code
-        // for populating the db
-        // (For now, just wipe out everything and insert data 
-       removeAllRecords();
-
-       File dir = new File("puzzles");
-       assert dir.isDirectory() : "directory puzzles not exist";
-       
-       for (File f : dir.listFiles())
-       {
-           MetaData meta = null;
-            try
-            {
-                meta = MetaData.parseMetaData(f.getAbsolutePath());
-            }
-            catch (FileNotFoundException ex)
-            {
-                ex.printStackTrace();
-            }
-            
-            if (meta != null)
-                DatabaseService.addPuzzle(f.getAbsolutePath(),
-                                          meta.getExpectedOutput(),
-                                          meta.getCategoryName(), 
-                                          meta.getHints());
-       }
+        // only (re)import the puzzles whose file has been added, changed or removed
+        File dir = new File("puzzles");
+        assert dir.isDirectory() : "directory puzzles not exist";
+        System.out.println("Puzzle catalog synced (" + CatalogSync.sync(dir) + ")");
     }
     
     public static void stop()
@@ -132,6 +119,15 @@ public class APIs
         stopped = true;
         System.out.println("Application stopped: " + new Date());
         System.setOut(stdout);
+        if (PERSIST_COMPILE_CACHE)
+            compileCache.save(new File(COMPILE_CACHE_FILE));
+        compileExecutor.shutdownNow();
+        WorkerPool.shutdownInstance();
+        if (prefetcher != null)
+            prefetcher.shutdown();
+        if (!gameRecorder.shutdown(RECORDER_TIME_OUT))
+            System.out.println("Some games could not be recorded: "
+                                + gameRecorder.getPendingCount() + " left");
         DatabaseService.closeConnection();
     }
 
@@ -140,6 +136,10 @@ public class APIs
         return VERSION;
     }
 
+    /**
+     * Loads the categories with all their puzzles. 
+     * Use getCategorySummaries to list them.
+     */
     public static List<Category> getCategories()
     {
         return DatabaseService.getAllCategories();
@@ -174,15 +174,18 @@ public class APIs
         }
     }
     /**
-     * start a new session with a new generated username
-     * @return 
+     * start a new session with the default user (the tokanagrammar.user
+     * property, or else the name of the OS user), created if needed
+     * @return a new session
      */
     public static Session newSession()
     {
         checkStarted();
-        // TODO:
-        // create new user
-        throw new UnsupportedOperationException("not supported yet");
+        String name = System.getProperty(USER_PROPERTY, System.getProperty("user.name"));
+        User user = DatabaseService.getUser(name);
+        if (user == null)
+            user = newUser(name);
+        return new Session(user);
     }
     
     /**
@@ -205,10 +208,191 @@ public class APIs
         return DatabaseService.getAllUsers();
     }
     
-    // temp
+    /**
+     * Compile and run the given source with the default engine
+     * @param src content of the source file
+     * @param name name of the outer most class
+     * @return the program's output
+     */
     public static Output compile(String src, String name)
     {
-        return Utils.compile(src, name);
+        return compile(src, name, compileEngine);
+    }
+
+    /**
+     * Compile and run the given source with the given engine,
+     * unless the same program has already been run
+     * @param src content of the source file
+     * @param name name of the outer most class
+     * @param engine
+     * @return the program's output
+     */
+    public static Output compile(String src, String name, CompileEngineKind engine)
+    {
+        Output out = compileCache.get(src, name);
+        if (out == null)
+        {
+            out = engine.getEngine().compile(src, name);
+            compileCache.put(src, name, out);
+        }
+        return out;
+    }
+
+    /**
+     * Check the syntax of the given arrangement of tokens without compiling it.
+     * This takes far less time than a compilation, hence can be done after
+     * every move.
+     * @param tokens all the tokens on the board, including the empty slots
+     * @return VALID, INVALID (with the position of the error),
+     *         or INCOMPLETE if the tokens before the first empty slot are fine
+     */
+    public static SyntaxCheck checkSyntax(List<SourceToken> tokens)
+    {
+        return JavaSyntaxChecker.check(tokens);
+    }
+
+    /**
+     * Compile and run the given source (with the default engine)
+     * in the background
+     * @param src content of the source file
+     * @param name name of the outer most class
+     * @return the pending output, which can be cancelled
+     */
+    public static CompileFuture compileAsync(String src, String name)
+    {
+        return compileAsync(src, name, compileEngine);
+    }
+
+    /**
+     * Compile and run the given source with the given engine in the background.
+     * 
+     * At most <code>MAX_PENDING_COMPILES</code> can be waiting. Past that,
+     * the returned future is already done, with an (inconclusive) error.
+     * 
+     * @param src content of the source file
+     * @param name name of the outer most class
+     * @param engine
+     * @return the pending output, which can be cancelled
+     */
+    public static CompileFuture compileAsync(final String src,
+                                             final String name,
+                                             final CompileEngineKind engine)
+    {
+        CompileFuture compile = new CompileFuture(new Callable<Output>()
+        {
+            @Override
+            public Output call()
+            {
+                return compile(src, name, engine);
+            }
+        });
+
+        try
+        {
+            compileExecutor.execute(compile);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            compile.reject("Too many programs are being compiled. Please try again later.");
+        }
+        return compile;
+    }
+
+    /**
+     * 
+     * @return the cache of compile results (eg., for its hit/miss counts)
+     */
+    public static CompileCache getCompileCache()
+    {
+        return compileCache;
+    }
+
+    public static CompileEngineKind getDefaultCompileEngine()
+    {
+        return compileEngine;
+    }
+
+    public static void setDefaultCompileEngine(CompileEngineKind engine)
+    {
+        if (!engine.isAvailable())
+            throw new InternalException("Compile engine not available: " + engine.name());
+        compileEngine = engine;
+    }
+
+    /**
+     * @return the name and number of puzzles of every category
+     */
+    public static List<CategorySummary> getCategorySummaries()
+    {
+        checkStarted();
+        return DatabaseService.getCategorySummaries();
+    }
+
+    /**
+     * @param categories
+     * @return ids of the puzzles in the given categories
+     *         (See getPuzzleForPlay)
+     */
+    public static List<Long> getPuzzleIds(Collection<CategorySummary> categories)
+    {
+        checkStarted();
+        List<String> names = new ArrayList<>();
+        for (CategorySummary c : categories)
+            names.add(c.getName());
+        return DatabaseService.getPuzzleIds(names);
+    }
+
+    /**
+     * @param id
+     * @return the puzzle and its hints, or null if the puzzle no longer exists
+     */
+    public static Puzzle getPuzzleForPlay(long id)
+    {
+        checkStarted();
+        return DatabaseService.getPuzzleForPlay(id);
+    }
+
+    /**
+     * Start preparing the puzzles with the given ids in the background
+     * (the prefetcher started before, if any, is shut down)
+     * 
+     * @param ids ids of the puzzles to play, in order (See getPuzzleIds)
+     * @param style
+     * @param difficulty percentage of the tokens to remove
+     * @param listener told of each puzzle prepared, may be null
+     * @return the prefetcher to take the puzzles from
+     */
+    public static synchronized PuzzlePrefetcher prefetch(List<Long> ids,
+                                                         BracingStyle style,
+                                                         int difficulty,
+                                                         PuzzlePrefetcher.Listener listener)
+    {
+        checkStarted();
+        if (prefetcher != null)
+            prefetcher.shutdown();
+        prefetcher = new PuzzlePrefetcher(ids, style, difficulty, PREFETCH_DEPTH, listener);
+        return prefetcher;
+    }
+
+    /**
+     * @param category a category name, or null for all the categories
+     * @param n maximum number of users
+     * @return the n users with the most points, best first
+     */
+    public static List<LeaderboardEntry> getLeaderboard(String category, int n)
+    {
+        checkStarted();
+        return DatabaseService.getLeaderboard(category, n);
+    }
+
+    /**
+     * @param user
+     * @return the games played by the user, latest first
+     */
+    public static List<Game> getHistory(User user)
+    {
+        checkStarted();
+        return DatabaseService.getHistory(user);
     }
 
     /**
@@ -281,6 +465,78 @@ public class APIs
             throw new InternalException("Service must be started before being used");
     }
     
+    /**
+     * Use the engine named by the <code>tokanagrammar.compiler</code> property,
+     * if set. Otherwise compile in process whenever a compiler is available.
+     */
+    private static CompileEngineKind findCompileEngine()
+    {
+        String name = System.getProperty(COMPILER_PROPERTY);
+        if (name != null)
+        {
+            try
+            {
+                CompileEngineKind kind = CompileEngineKind.valueOf(name.trim().toUpperCase());
+                if (kind.isAvailable())
+                    return kind;
+            }
+            catch (IllegalArgumentException ex)
+            {
+                Logger.getLogger(APIs.class.getName()).log(Level.WARNING,
+                                                           "Unknown compiler: {0}", name);
+            }
+        }
+
+        return CompileEngineKind.IN_PROCESS.isAvailable()
+                ? CompileEngineKind.IN_PROCESS
+                : CompileEngineKind.SUBPROCESS;
+    }
+
+    private static final String COMPILER_PROPERTY = "tokanagrammar.compiler";
+    private static final String COMPILE_CACHE_FILE = "config/compile-cache.bin";
+    private static final boolean PERSIST_COMPILE_CACHE
+            = Boolean.getBoolean("tokanagrammar.persistCompileCache");
+    private static final CompileCache compileCache
+            = new CompileCache(Integer.getInteger("tokanagrammar.compileCacheSize",
+                                                  CompileCache.DEFAULT_CAPACITY));
+    private static CompileEngineKind compileEngine = findCompileEngine();
+
+    private static final int COMPILE_THREADS = 2;
+    private static final int MAX_PENDING_COMPILES = 8;
+    private static final ThreadPoolExecutor compileExecutor = new ThreadPoolExecutor(
+            COMPILE_THREADS, COMPILE_THREADS,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_PENDING_COMPILES),
+            new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task)
+                {
+                    Thread thread = new Thread(task, "compile-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final String USER_PROPERTY = "tokanagrammar.user";
+    private static final long RECORDER_TIME_OUT = 5000;
+    private static final GameRecorder gameRecorder = new GameRecorder();
+
+    /**
+     * Queue the result of a game to be written in the background
+     * @return false if it has been dropped
+     */
+    static boolean recordGame(GameRecorder.GameResult result)
+    {
+        return gameRecorder.record(result);
+    }
+
+    private static final int PREFETCH_DEPTH
+            = Integer.getInteger("tokanagrammar.prefetchDepth", PuzzlePrefetcher.DEFAULT_DEPTH);
+    private static PuzzlePrefetcher prefetcher;
+
     private static final int MAX_TO_REMOVE_PERCENT = 80;
     private static final int DEFAULT_PERCENT = 10;
 }
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+/**
+ * Name and number of puzzles of a category, without the puzzles themselves.
+ * (See APIs.getCategorySummaries)
+ */
+public class CategorySummary
+{
+    private final String name;
+    private final long puzzleCount;
+
+    public CategorySummary(String name, long puzzleCount)
+    {
+        this.name = name;
+        this.puzzleCount = puzzleCount;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getPuzzleCount()
+    {
+        return puzzleCount;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj instanceof CategorySummary
+                && name.equals(((CategorySummary) obj).name);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
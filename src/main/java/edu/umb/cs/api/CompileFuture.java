@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+import edu.umb.cs.source.Output;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Result of an asynchronous compilation (See APIs.compileAsync).
+ * 
+ * Cancelling it with <code>cancel(true)</code> stops the compiler or the
+ * program being run (the process running it, if any, is killed).
+ * Listeners are told when it is done, for whatever reason.
+ */
+public class CompileFuture extends FutureTask<Output>
+{
+    public interface Listener
+    {
+        /**
+         * Called once the compilation is done, cancelled or rejected.
+         * This is called on the thread that completed it, not the GUI's.
+         * 
+         * @param compile 
+         */
+        void done(CompileFuture compile);
+    }
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean notified = false;
+
+    CompileFuture(Callable<Output> compile)
+    {
+        super(compile);
+    }
+
+    /**
+     * Call the given listener once this is done
+     * (right away if it already is)
+     * 
+     * @param listener 
+     */
+    public void addListener(Listener listener)
+    {
+        synchronized (listeners)
+        {
+            if (!notified)
+            {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.done(this);
+    }
+
+    /**
+     * Complete this without running the compilation
+     * (eg., when there are too many waiting already)
+     * 
+     * @param reason 
+     */
+    void reject(String reason)
+    {
+        set(new Output(reason, true, false));
+    }
+
+    @Override
+    protected void done()
+    {
+        List<Listener> toNotify;
+        synchronized (listeners)
+        {
+            notified = true;
+            toNotify = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (Listener listener : toNotify)
+            listener.done(this);
+    }
+}
@@ -21,7 +21,8 @@
 
 package edu.umb.cs.api;
 
-import edu.umb.cs.entity.Game;
+import edu.umb.cs.api.service.GameRecorder;
+import edu.umb.cs.entity.GameTelemetry;
 import edu.umb.cs.entity.Puzzle;
 import edu.umb.cs.entity.User;
 
@@ -46,11 +47,34 @@ public final class Session
         return user;
     }
 
-    public Game newGame(Puzzle puzzle)
+    /**
+     * Record a game with no points
+     * @param puzzle
+     * @return false if the game could not be queued for recording
+     */
+    public boolean newGame(Puzzle puzzle)
     {
-        Game game = new Game (user, puzzle);
-        user.addGame(game);
-        puzzle.addGame(game);   
-        return game;
+        return newGame(puzzle, 0, new GameTelemetry());
+    }
+
+    /**
+     * Record a finished game, along with its points. 
+     * 
+     * This does not wait for the database: the game (and the user's scores)
+     * are written in the background (See GameRecorder). Until then, they
+     * are not in the user's games or points.
+     * 
+     * @param puzzle
+     * @param points
+     * @param telemetry how the game was played (See TelemetryRecorder)
+     * @return false if the game could not be queued for recording
+     */
+    public boolean newGame(Puzzle puzzle, int points, GameTelemetry telemetry)
+    {
+        return APIs.recordGame(new GameRecorder.GameResult(user.getUsername(),
+                                                           puzzle.getId(),
+                                                           points,
+                                                           System.currentTimeMillis() / 1000L,
+                                                           telemetry));
     }
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+import edu.umb.cs.source.Position;
+import edu.umb.cs.source.ShuffledSource;
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceToken;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells whether the tokens placed on the board put back the original
+ * source, in which case there is no need to compile it: its output is
+ * the puzzle's expected output.
+ * 
+ * Only the empty slots are compared, since the other tokens cannot be moved.
+ * Other arrangements may still be right, and must be compiled and run.
+ */
+public class SolutionVerifier
+{
+    private static final AtomicLong submissions = new AtomicLong();
+    private static final AtomicLong skipped = new AtomicLong();
+
+    // index (on the board) of each empty slot, in increasing order
+    private final int slots[];
+    // image of the token originally at each slot
+    private final String expected[];
+
+    /**
+     * @param src the shuffled source the board was built from
+     */
+    public SolutionVerifier(ShuffledSource src)
+    {
+        SourceFile shuffled = src.getShuffledSource();
+
+        // the board lists all the lines' tokens one after another
+        int lineStarts[] = new int[shuffled.lineCount()];
+        for (int line = 1; line < lineStarts.length; ++line)
+            lineStarts[line] = lineStarts[line - 1] + shuffled.tokenCount(line - 1);
+
+        List<Position> positions = src.getRemovedPositions();
+        List<SourceToken> removed = src.getRemovedTokens();
+        long keys[] = new long[positions.size()];
+        for (int n = 0; n < keys.length; ++n)
+        {
+            Position pos = positions.get(n);
+            // sort by slot, but remember which token goes there
+            keys[n] = ((long)(lineStarts[pos.getLine()] + pos.getPos()) << 32) | n;
+        }
+        Arrays.sort(keys);
+
+        slots = new int[keys.length];
+        expected = new String[keys.length];
+        for (int n = 0; n < keys.length; ++n)
+        {
+            slots[n] = (int)(keys[n] >>> 32);
+            expected[n] = removed.get((int)keys[n]).image();
+        }
+    }
+
+    /**
+     * Counts as a submission
+     * 
+     * @param board all the tokens on the board
+     * @return true if every empty slot has been filled with the token
+     *         originally there (or one with the same image)
+     */
+    public boolean matchesOriginal(List<SourceToken> board)
+    {
+        submissions.incrementAndGet();
+        for (int n = 0; n < slots.length; ++n)
+        {
+            if (slots[n] >= board.size()
+                    || !expected[n].equals(board.get(slots[n]).image()))
+                return false;
+        }
+        skipped.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return number of submissions checked so far (by all verifiers)
+     */
+    public static long getSubmissionCount()
+    {
+        return submissions.get();
+    }
+
+    /**
+     * @return number of submissions that matched the original source,
+     *         hence did not need to be compiled
+     */
+    public static long getSkippedCompileCount()
+    {
+        return skipped.get();
+    }
+}
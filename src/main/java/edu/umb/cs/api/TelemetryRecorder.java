@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+import edu.umb.cs.entity.GameTelemetry;
+
+/**
+ * Measures a game as it is played: a few counters and System.nanoTime
+ * readings, no allocation until finish(). 
+ * 
+ * Like the rest of the UI, it is meant to be used from one thread.
+ */
+public class TelemetryRecorder
+{
+    private final long start;
+    private long pauseStart = -1;
+    private long pausedNanos;
+    private int pauses;
+    private long compileStart = -1;
+    private long compileWaitNanos;
+    private int attempts;
+    private int moves;
+
+    /**
+     * Start measuring a game now
+     */
+    public TelemetryRecorder()
+    {
+        start = System.nanoTime();
+    }
+
+    /**
+     * The game is no longer on screen (no effect if it is already paused)
+     */
+    public void pause()
+    {
+        if (pauseStart < 0)
+        {
+            pauseStart = System.nanoTime();
+            ++pauses;
+        }
+    }
+
+    /**
+     * The game is back on screen (no effect if it is not paused)
+     */
+    public void resume()
+    {
+        if (pauseStart >= 0)
+        {
+            pausedNanos += System.nanoTime() - pauseStart;
+            pauseStart = -1;
+        }
+    }
+
+    /**
+     * A solution has been submitted
+     */
+    public void attempt()
+    {
+        ++attempts;
+    }
+
+    /**
+     * A token has been dragged and dropped
+     */
+    public void move()
+    {
+        ++moves;
+    }
+
+    /**
+     * The user is now waiting on a compilation
+     */
+    public void compileStarted()
+    {
+        if (compileStart < 0)
+            compileStart = System.nanoTime();
+    }
+
+    /**
+     * The compilation is over (done, stopped or timed out)
+     */
+    public void compileFinished()
+    {
+        if (compileStart >= 0)
+        {
+            compileWaitNanos += System.nanoTime() - compileStart;
+            compileStart = -1;
+        }
+    }
+
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    /**
+     * @return what has been measured so far
+     *         (a pause or compilation still going on counts up to now)
+     */
+    public GameTelemetry finish()
+    {
+        long now = System.nanoTime();
+        long paused = pausedNanos + (pauseStart < 0 ? 0 : now - pauseStart);
+        long compiling = compileWaitNanos + (compileStart < 0 ? 0 : now - compileStart);
+        return new GameTelemetry(now - start, paused, pauses, compiling, attempts, moves);
+    }
+}
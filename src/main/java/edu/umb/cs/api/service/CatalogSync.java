@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.entity.*;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.MetaData;
+import edu.umb.cs.source.std.Utils;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+/**
+ * Brings the stored puzzles up to date with the files of a directory.
+ * 
+ * Files are matched with puzzles by path. A file whose modification time
+ * has not changed is not read at all, and one whose content hash has not
+ * changed only gets its time updated. Only new and changed files are
+ * parsed and verified (See PuzzleVerifier). Puzzles whose file is gone
+ * are removed, along with their games.
+ * 
+ * Everything is written in one transaction. Users, games of the other 
+ * puzzles and hints of unchanged puzzles are left alone.
+ */
+public class CatalogSync
+{
+    /**
+     * What a sync has done
+     */
+    public static class Report
+    {
+        private int added, updated, touched, removed, unchanged;
+
+        public int getAdded()
+        {
+            return added;
+        }
+
+        public int getUpdated()
+        {
+            return updated;
+        }
+
+        /**
+         * @return number of files with a new modification time but the same content
+         */
+        public int getTouched()
+        {
+            return touched;
+        }
+
+        public int getRemoved()
+        {
+            return removed;
+        }
+
+        public int getUnchanged()
+        {
+            return unchanged;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "added: " + added + ", updated: " + updated + ", touched: " + touched
+                    + ", removed: " + removed + ", unchanged: " + unchanged;
+        }
+    }
+
+    private CatalogSync() {}
+
+    /**
+     * @param dir directory of the puzzles' source files
+     * @return what has been changed
+     */
+    public static Report sync(File dir)
+    {
+        Report report = new Report();
+        Map<String, Puzzle> stored = new HashMap<>();
+        for (Puzzle p : DatabaseService.getAllPuzzles())
+            stored.put(p.getFilePath(), p);
+
+        // diff the directory against the db
+        Map<String, Long> times = new HashMap<>();
+        Map<String, Puzzle> touched = new HashMap<>();
+        List<MetaData> changed = new ArrayList<>();
+        File files[] = dir.listFiles();
+        for (File f : files == null ? new File[0] : files)
+        {
+            String path = f.getAbsolutePath();
+            long time = f.lastModified();
+            Puzzle p = stored.remove(path);
+            if (p != null && p.getLastModified() == time && p.getSourceHash() != null)
+            {
+                ++report.unchanged;
+                continue;
+            }
+            times.put(path, time);
+
+            try
+            {
+                if (p != null && p.getSourceHash() != null
+                        && p.getSourceHash().equals(Utils.hash(Files.readAllBytes(f.toPath()))))
+                {
+                    touched.put(path, p);
+                    continue;
+                }
+
+                MetaData meta = MetaData.parseMetaData(path);
+                if (meta != null)
+                    changed.add(meta);
+                else if (p != null)
+                    stored.put(path, p);    // no longer a puzzle
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(CatalogSync.class.getName())
+                      .log(Level.SEVERE, "Cannot read " + path, ex);
+                if (p != null)
+                    touched.put(path, p);   // keep it as it is
+            }
+        }
+        // what is left is gone from the directory
+
+        Map<String, PuzzleVerifier.Verification> verified
+                = PuzzleVerifier.verifyAll(changed,
+                                           Collections.<String, PuzzleVerifier.Verification>emptyMap());
+
+        EntityManager em = DatabaseService.getEntityManager();
+        EntityTransaction t = em.getTransaction();
+        boolean success = false;
+        try
+        {
+            t.begin();
+            for (Map.Entry<String, Puzzle> entry : touched.entrySet())
+            {
+                entry.getValue().setLastModified(times.get(entry.getKey()));
+                ++report.touched;
+            }
+
+            for (MetaData meta : changed)
+            {
+                Puzzle p = DatabaseService.getPuzzle(meta.getPath());
+                if (p == null)
+                {
+                    p = new Puzzle(meta.getPath(), meta.getExpectedOutput(), meta.getCategoryName());
+                    DatabaseService.addHints(p, meta.getHints());
+                    em.persist(p);
+                    ++report.added;
+                }
+                else
+                {
+                    update(em, p, meta);
+                    ++report.updated;
+                }
+                PuzzleVerifier.Verification ver = verified.get(meta.getPath());
+                if (ver != null)
+                    p.setVerification(ver.getHash(), ver.getOutput());
+                p.setLastModified(times.get(meta.getPath()));
+            }
+
+            for (Puzzle p : stored.values())
+            {
+                remove(em, p);
+                ++report.removed;
+            }
+            success = true;
+        }
+        catch (IOException | ParseException ex)
+        {
+            // cannot happen: the files have just been read
+            Logger.getLogger(CatalogSync.class.getName()).log(Level.SEVERE, null, ex);
+            return new Report();
+        }
+        finally
+        {
+            if (success)
+                t.commit();
+            else
+                t.rollback();
+        }
+        return report;
+    }
+
+    private static void update(EntityManager em, Puzzle p, MetaData meta)
+    {
+        p.setMetaDataOutput(meta.getExpectedOutput());
+
+        Category old = p.getCategory();
+        if (old == null || !old.getName().equals(meta.getCategoryName()))
+        {
+            p.setCategory(DatabaseService.findOrCreateCategory(meta.getCategoryName()));
+            if (old != null && old.puzzlesCount() == 0)
+                em.remove(old);
+        }
+
+        for (Hint h : new ArrayList<>(p.getHints()))
+        {
+            p.removeHint(h);
+            em.remove(h);
+        }
+        DatabaseService.addHints(p, meta.getHints());
+    }
+
+    private static void remove(EntityManager em, Puzzle p)
+    {
+        for (Game g : p.getGames())
+            if (g.getUser() != null)
+            {
+                g.getUser().removeGame(g);
+                g.getUser().addPoints(-g.getPoint());
+            }
+        DatabaseService.removeScores(p);
+
+        Category cat = p.getCategory();
+        if (cat != null)
+        {
+            cat.removePuzzle(p);
+            if (cat.puzzlesCount() == 0)
+                em.remove(cat);
+        }
+        em.remove(p);
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.source.Output;
+import edu.umb.cs.source.std.Utils;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the outputs of the programs that have been compiled and run,
+ * so that trying the same arrangement of tokens again (by the same player or
+ * by another) does not start the compiler.
+ * 
+ * Entries are keyed by a hash of the normalized source plus the name of the
+ * outer most class. Sources that differ only in the amount of spaces and
+ * tabs between tokens, or in the package declaration, share an entry.
+ * Only conclusive outputs are kept (ie., not time-outs or interruptions).
+ * 
+ * The least recently used entries are dropped once the capacity is reached.
+ */
+public class CompileCache
+{
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int FORMAT_VERSION = 1;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Output> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CompileCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompileCache(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        entries = new LinkedHashMap<String, Output>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Output> eldest)
+            {
+                return size() > CompileCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param src content of the source file
+     * @param outer name of the outer most class
+     * @return the output of an earlier run of the same program, or null
+     */
+    public Output get(String src, String outer)
+    {
+        Output out;
+        String key = key(src, outer);
+        synchronized (entries)
+        {
+            out = entries.get(key);
+        }
+        (out == null ? misses : hits).incrementAndGet();
+        return out;
+    }
+
+    /**
+     * Remember the output of the given program, if it is conclusive
+     * 
+     * @param src content of the source file
+     * @param outer name of the outer most class
+     * @param out the program's output
+     */
+    public void put(String src, String outer, Output out)
+    {
+        if (!out.isConclusive())
+            return;
+        String key = key(src, outer);
+        synchronized (entries)
+        {
+            entries.put(key, out);
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Add the entries saved in the given file.
+     * Nothing is added if the file does not exist or cannot be read.
+     * 
+     * @param file 
+     */
+    public void load(File file)
+    {
+        if (!file.isFile())
+            return;
+
+        try (DataInputStream in = new DataInputStream(
+                                    new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != FORMAT_VERSION)
+                return;
+            int count = in.readInt();
+            for (int n = 0; n < count; ++n)
+            {
+                String key = in.readUTF();
+                boolean isError = in.readBoolean();
+                byte text[] = new byte[in.readInt()];
+                in.readFully(text);
+                synchronized (entries)
+                {
+                    entries.put(key, new Output(new String(text, UTF8), isError));
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(CompileCache.class.getName()).log(Level.WARNING,
+                                                               "Could not load " + file, ex);
+        }
+    }
+
+    /**
+     * Write all entries to the given file, least recently used first
+     * (so that loading them back keeps the order)
+     * 
+     * @param file 
+     */
+    public void save(File file)
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                                        new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            synchronized (entries)
+            {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Output> entry : entries.entrySet())
+                {
+                    byte text[] = entry.getValue().getOuput().getBytes(UTF8);
+                    out.writeUTF(entry.getKey());
+                    out.writeBoolean(entry.getValue().isError());
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(CompileCache.class.getName()).log(Level.WARNING,
+                                                               "Could not save " + file, ex);
+        }
+    }
+
+    /**
+     * @param src
+     * @param outer
+     * @return the key of the entry for the given program
+     */
+    static String key(String src, String outer)
+    {
+        return Utils.hash(normalize(src).getBytes(UTF8)) + ':' + outer;
+    }
+
+    /**
+     * Drop the package declaration, replace each run of spaces and tabs
+     * by one space and remove those at the end of lines.
+     * 
+     * Line breaks are kept (so are the line numbers in error messages),
+     * and so is everything inside comments and string or char literals.
+     * 
+     * @param src
+     * @return the normalized source
+     */
+    static String normalize(String src)
+    {
+        src = Utils.stripPackage(src);
+        StringBuilder bd = new StringBuilder(src.length());
+        int n = 0;
+        int len = src.length();
+        boolean blank = false;
+        while (n < len)
+        {
+            char ch = src.charAt(n);
+            if (ch == ' ' || ch == '\t' || ch == '\f')
+            {
+                blank = true;
+                ++n;
+                continue;
+            }
+
+            if (ch == '\r' || ch == '\n')
+            {
+                bd.append('\n');
+                blank = false;
+                n += (ch == '\r' && n + 1 < len && src.charAt(n + 1) == '\n') ? 2 : 1;
+                continue;
+            }
+
+            if (blank)
+            {
+                bd.append(' ');
+                blank = false;
+            }
+
+            int end = n + 1;
+            if (ch == '"' || ch == '\'')
+            {
+                // to the closing quote (or the end of line, if unterminated)
+                while (end < len && src.charAt(end) != ch && src.charAt(end) != '\n')
+                    end += src.charAt(end) == '\\' ? 2 : 1;
+                end = Math.min(end + 1, len);
+            }
+            else if (ch == '/' && end < len && src.charAt(end) == '/')
+            {
+                while (end < len && src.charAt(end) != '\n' && src.charAt(end) != '\r')
+                    ++end;
+            }
+            else if (ch == '/' && end < len && src.charAt(end) == '*')
+            {
+                end = src.indexOf("*/", end + 1);
+                end = end < 0 ? len : end + 2;
+            }
+            bd.append(src, n, end);
+            n = end;
+        }
+        return bd.toString();
+    }
+}
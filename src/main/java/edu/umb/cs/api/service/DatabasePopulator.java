@@ -21,7 +21,23 @@
 
 package edu.umb.cs.api.service;
 
+import edu.umb.cs.source.MetaData;
+import java.io.File;
+import java.util.*;
+
 /**
+ * Bulk loads puzzles into the database:
+ * 
+ * <pre>
+ * DatabasePopulator [-db name] [-batch size] [-verify] [file or directory ...]
+ * </pre>
+ * 
+ * Directories are loaded with all the files they contain (not recursively).
+ * Without any file, the puzzles directory is loaded. With -verify, each
+ * source is run first (See PuzzleVerifier), otherwise it is run the first
+ * time the game syncs its catalog.
+ * 
+
  * @author              Vy Thuy Nguyen
  * @version             1.0 May 8, 2013
  * Last modified:       
@@ -30,19 +46,21 @@ public class DatabasePopulator
 {   
     private static final String LOG = "config/log_db_populator.txt";
     private static final String PRODUCTION_DB = "tokanagrammar";
+    private static final String USAGE
+            = "usage: DatabasePopulator [-db name] [-batch size] [-verify] [file or directory ...]";
     private static boolean started = false;
     private static boolean stopped = false;
 
     public static void main (String[] args)
     {
-        doPopulate();
+        doPopulate(args);
     }
     
     /**
      * Start a database connection
      * Call this before using any of the method in this class
      */
-    private static void start()
+    private static void start(String dbName)
     {
         if (started)
         {
@@ -50,7 +68,7 @@ public class DatabasePopulator
         }
         else
         {
-            DatabaseService.openConnection(PRODUCTION_DB);
+            DatabaseService.openConnection(dbName);
             started = true;
         }
     }
@@ -68,8 +86,83 @@ public class DatabasePopulator
         }
     }
     
-    public static void doPopulate()
+    /**
+     * @param args command line arguments (See the usage above)
+     */
+    public static void doPopulate(String... args)
+    {
+        String dbName = PRODUCTION_DB;
+        int batchSize = DatabaseService.IMPORT_BATCH_SIZE;
+        boolean verify = false;
+        boolean paths = false;
+        List<File> files = new ArrayList<>();
+        try
+        {
+            for (int n = 0; n < args.length; ++n)
+            {
+                switch (args[n])
+                {
+                    case "-db":
+                        dbName = args[++n];
+                        break;
+                    case "-batch":
+                        batchSize = Integer.parseInt(args[++n]);
+                        break;
+                    case "-verify":
+                        verify = true;
+                        break;
+                    default:
+                        addFiles(new File(args[n]), files);
+                        paths = true;
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | NumberFormatException ex)
+        {
+            System.err.println(USAGE);
+            return;
+        }
+        if (!paths)
+            addFiles(new File("puzzles"), files);
+
+        long start = System.nanoTime();
+        List<MetaData> metas = MetaData.parseAll(files);
+        System.out.printf("parsed %d of %d files in %d ms%n",
+                          metas.size(), files.size(), (System.nanoTime() - start) / 1000000);
+
+        Map<String, PuzzleVerifier.Verification> verified = Collections.emptyMap();
+        if (verify)
+        {
+            start = System.nanoTime();
+            verified = PuzzleVerifier.verifyAll(metas, verified);
+            System.out.printf("verified %d puzzles in %d ms%n",
+                              verified.size(), (System.nanoTime() - start) / 1000000);
+        }
+
+        start(dbName);
+        try
+        {
+            System.out.println(DatabaseService.addPuzzles(metas, verified, batchSize));
+        }
+        finally
+        {
+            stop();
+        }
+    }
+
+    private static void addFiles(File f, List<File> files)
     {
-        start();
+        if (f.isDirectory())
+        {
+            File children[] = f.listFiles();
+            Arrays.sort(children);
+            for (File child : children)
+                if (child.isFile())
+                    files.add(child);
+        }
+        else if (f.isFile())
+            files.add(f);
+        else
+            System.err.println("no such file: " + f);
     }
 }
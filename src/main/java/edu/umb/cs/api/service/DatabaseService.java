@@ -21,16 +21,21 @@
 
 package edu.umb.cs.api.service;
 
+import edu.umb.cs.api.CategorySummary;
+import edu.umb.cs.api.LeaderboardEntry;
 import edu.umb.cs.entity.*;
 import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.MetaData;
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
 
 /**
  * @author              Vy Thuy Nguyen
@@ -43,6 +48,14 @@ public class DatabaseService
     private static String partialURL = "$objectdb/db/";
     private static EntityManagerFactory emf;
     private static EntityManager em;
+    private static QueryRegistry queries;
+
+    /**
+     * Number of puzzles persisted between two flushes of a bulk import
+     * (See addPuzzles)
+     */
+    public static final int IMPORT_BATCH_SIZE
+            = Integer.getInteger("tokanagrammar.importBatchSize", 500);
     
     /**
      * Start database connection with default settings
@@ -60,12 +73,21 @@ public class DatabaseService
         partialURL = "$objectdb/db/";
         emf = Persistence.createEntityManagerFactory(partialURL + dbName, properties);
         em = emf.createEntityManager();
-        
-        // make the classes known to ODB
+        queries = new QueryRegistry(em);
+        registerClasses();
+    }
+
+    /**
+     * Make the classes (and their named queries) known to ODB
+     */
+    private static void registerClasses()
+    {
         em.find(User.class, User.class);
         em.find(Puzzle.class, Puzzle.class);
         em.find(Game.class, Game.class);
         em.find(Category.class, Category.class);
+        em.find(Hint.class, Hint.class);
+        em.find(Score.class, Score.class);
     }
 
     /**
@@ -85,11 +107,8 @@ public class DatabaseService
         properties.put("javax.persistence.jdbc.password", password);
         emf = Persistence.createEntityManagerFactory(partialURL + dbName, properties);
         em = emf.createEntityManager();
-        
-        // TODO replace all em.createQuery().exeucte... 
-        // with prepare state.
-        // ie., create those queries only once and execute them when needed
-        // (This saves A LOT of time in parsing)
+        queries = new QueryRegistry(em);
+        registerClasses();
     }
     
     /**
@@ -103,6 +122,7 @@ public class DatabaseService
             t.commit();
         em.close();
         emf.close();
+        queries = null;
     }
     
     /**
@@ -115,11 +135,12 @@ public class DatabaseService
         try
         {
             t.begin();
-            em.createQuery("DELETE FROM Hint h").executeUpdate();
-            em.createQuery("DELETE FROM Puzzle p").executeUpdate();
-            em.createQuery("DELETE FROM Category c").executeUpdate();
-            em.createQuery("DELETE FROM Game g").executeUpdate();
-            em.createQuery("DELETE FROM User u").executeUpdate();
+            queries.update(Score.DELETE_ALL).executeUpdate();
+            queries.update(Hint.DELETE_ALL).executeUpdate();
+            queries.update(Puzzle.DELETE_ALL).executeUpdate();
+            queries.update(Category.DELETE_ALL).executeUpdate();
+            queries.update(Game.DELETE_ALL).executeUpdate();
+            queries.update(User.DELETE_ALL).executeUpdate();
             success = true;
         }
         finally
@@ -137,7 +158,163 @@ public class DatabaseService
      */
     public static List<Puzzle> getAllPuzzles()
     {
-        return em.createQuery("SELECT p FROM Puzzle p", Puzzle.class).getResultList();
+        return queries.get(Puzzle.FIND_ALL, Puzzle.class).getResultList();
+    }
+
+    /**
+     * Puzzle-play profile: one puzzle and its hints, but none of its games
+     * 
+     * @param id
+     * @return the puzzle of the given id, or null if there is none
+     */
+    public static Puzzle getPuzzleForPlay(long id)
+    {
+        return getPuzzleForPlay(queries, id);
+    }
+
+    static Puzzle getPuzzleForPlay(QueryRegistry queries, long id)
+    {
+        List<Puzzle> found = queries.get(Puzzle.FIND_FOR_PLAY, Puzzle.class)
+                                    .setParameter("id", id)
+                                    .getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * @param catNames
+     * @return the ids of all the puzzles in the given categories
+     */
+    public static List<Long> getPuzzleIds(Collection<String> catNames)
+    {
+        if (catNames.isEmpty())
+            return new ArrayList<>();
+        return queries.get(Puzzle.IDS_BY_CATEGORY, Long.class)
+                      .setParameter("names", catNames)
+                      .getResultList();
+    }
+
+    /**
+     * Catalog-summary profile: names and counts only
+     * 
+     * @return a summary of every category that has some puzzle
+     */
+    public static List<CategorySummary> getCategorySummaries()
+    {
+        return queries.get(Category.SUMMARIES, CategorySummary.class).getResultList();
+    }
+
+    /**
+     * User-history profile: the user's games and their puzzles,
+     * but not the puzzles' hints or other games
+     * 
+     * @param u
+     * @return the user's games, latest first
+     */
+    public static List<Game> getHistory(User u)
+    {
+        return queries.get(Game.HISTORY, Game.class)
+                      .setParameter("user", u)
+                      .getResultList();
+    }
+
+    /**
+     * Persist a (finished) game and add its points to the user's score
+     * on the puzzle and to the user's total
+     * 
+     * @param g
+     */
+    public static void recordGame(Game g)
+    {
+        EntityTransaction t = em.getTransaction();
+        boolean success = false;
+        try
+        {
+            t.begin();
+            recordGame(em, queries, g);
+            success = true;
+        }
+        finally
+        {
+            if (success)
+                t.commit();
+            else
+                t.rollback();
+        }
+    }
+
+    /**
+     * Persist a game and update the scores, in the given entity manager
+     * (the caller owns the transaction)
+     */
+    static void recordGame(EntityManager em, QueryRegistry queries, Game g)
+    {
+        em.persist(g);
+        Score score = getScore(queries, g.getUser(), g.getPuzzle());
+        if (score == null)
+        {
+            score = new Score(g.getUser(), g.getPuzzle());
+            em.persist(score);
+        }
+        score.addGame(g.getPoint());
+        g.getUser().addPoints(g.getPoint());
+    }
+
+    /**
+     * @param u
+     * @param p
+     * @return the user's score on the puzzle, or null if the user has never played it
+     */
+    public static Score getScore(User u, Puzzle p)
+    {
+        return getScore(queries, u, p);
+    }
+
+    private static Score getScore(QueryRegistry queries, User u, Puzzle p)
+    {
+        List<Score> found = queries.get(Score.FIND, Score.class)
+                                   .setParameter("user", u)
+                                   .setParameter("puzzle", p)
+                                   .getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Remove the scores on a puzzle (the caller owns the transaction)
+     * @param p
+     */
+    static void removeScores(Puzzle p)
+    {
+        queries.update(Score.DELETE_BY_PUZZLE)
+               .setParameter("puzzle", p)
+               .executeUpdate();
+    }
+
+    /**
+     * @param catName a category name, or null for all the categories
+     * @param n maximum number of users
+     * @return the n users with the most points (in the category), best first
+     */
+    public static List<LeaderboardEntry> getLeaderboard(String catName, int n)
+    {
+        TypedQuery<LeaderboardEntry> q;
+        if (catName == null)
+            q = queries.get(Score.TOP_USERS, LeaderboardEntry.class);
+        else
+            q = queries.get(Score.TOP_USERS_IN_CATEGORY, LeaderboardEntry.class)
+                       .setParameter("name", catName);
+        return q.setMaxResults(n).getResultList();
+    }
+
+    /**
+     * @param filePath
+     * @return the puzzle of the given source file, or null if there is none
+     */
+    public static Puzzle getPuzzle(String filePath)
+    {
+        List<Puzzle> found = queries.get(Puzzle.FIND_BY_PATH, Puzzle.class)
+                                    .setParameter("filePath", filePath)
+                                    .getResultList();
+        return found.isEmpty() ? null : found.get(0);
     }
     
     /**
@@ -146,13 +323,13 @@ public class DatabaseService
      */
     public static List<Category> getAllCategories()
     {
-        return em.createQuery("SELECT c FROM Category c", Category.class).getResultList();
+        return queries.get(Category.FIND_ALL, Category.class).getResultList();
     }
     
     //List of users
     public static List<User> getAllUsers()
     {
-        return em.createQuery("SELECT u FROM User u", User.class).getResultList();
+        return queries.get(User.FIND_ALL, User.class).getResultList();
     }
     
     /**
@@ -164,6 +341,26 @@ public class DatabaseService
      * @return true if the source file can be found and added correctly
      */
     public static boolean addPuzzle(String filePath, String expResult, String catName, List<String> hints)
+    {
+        return addPuzzle(filePath, expResult, catName, hints, null);
+    }
+
+    /**
+     * Add a new puzzle to the database, along with the result
+     * of running its source
+     * 
+     * @param filePath the path to the source file (relative to execution directory)
+     * @param expResult expected result of the program (from the meta data)
+     * @param catName
+     * @param hints
+     * @param verification may be null if the source has not been run
+     * @return true if the source file can be found and added correctly
+     */
+    public static boolean addPuzzle(String filePath,
+                                    String expResult,
+                                    String catName,
+                                    List<String> hints,
+                                    PuzzleVerifier.Verification verification)
     {
         System.out.println("adding to category: " + catName);
         boolean success = false;
@@ -172,12 +369,9 @@ public class DatabaseService
         {
             t.begin();
             Puzzle p = new Puzzle(filePath, expResult, catName);
-            if (hints != null)
-                for (String hint : hints)
-                {
-                    Hint h = new Hint(p, hint);
-                    p.addHint(h);
-                }
+            if (verification != null)
+                p.setVerification(verification.getHash(), verification.getOutput());
+            addHints(p, hints);
             em.persist(p);
             success = true;
         }
@@ -195,6 +389,178 @@ public class DatabaseService
         return true;
     }
     
+    /**
+     * What a bulk import has done
+     */
+    public static class ImportReport
+    {
+        private int added, skipped;
+        private long nanos;
+
+        public int getAdded()
+        {
+            return added;
+        }
+
+        /**
+         * @return number of puzzles left out because they were already
+         *         in the database or their file could not be found
+         */
+        public int getSkipped()
+        {
+            return skipped;
+        }
+
+        public long getMillis()
+        {
+            return nanos / 1000000;
+        }
+
+        public double getPuzzlesPerSecond()
+        {
+            return nanos == 0 ? 0 : added * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("added: %d, skipped: %d, in %d ms (%.1f puzzles/s)",
+                                 added, skipped, getMillis(), getPuzzlesPerSecond());
+        }
+    }
+
+    /**
+     * Add many puzzles at once, in one transaction
+     * (See MetaData.parseAll for parsing the files in parallel)
+     * 
+     * @param metas meta data of the puzzles
+     * @return what has been added
+     */
+    public static ImportReport addPuzzles(Collection<MetaData> metas)
+    {
+        return addPuzzles(metas, Collections.<String, PuzzleVerifier.Verification>emptyMap(),
+                          IMPORT_BATCH_SIZE);
+    }
+
+    /**
+     * Add many puzzles at once, in one transaction.
+     * 
+     * Puzzles whose path is already in the database are skipped. 
+     * Categories are looked up once per batch rather than once per puzzle,
+     * and the persistence context is flushed and cleared after every batch
+     * so that it does not grow with the number of puzzles.
+     * 
+     * @param metas meta data of the puzzles
+     * @param verified verifications by path (See PuzzleVerifier.verifyAll)
+     * @param batchSize number of puzzles persisted between two flushes
+     * @return what has been added
+     */
+    public static ImportReport addPuzzles(Collection<MetaData> metas,
+                                          Map<String, PuzzleVerifier.Verification> verified,
+                                          int batchSize)
+    {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        Set<String> stored = new HashSet<>(
+                queries.get(Puzzle.ALL_PATHS, String.class).getResultList());
+        Map<String, Category> categories = new HashMap<>();
+
+        EntityTransaction t = em.getTransaction();
+        boolean success = false;
+        try
+        {
+            t.begin();
+            int pending = 0;
+            for (MetaData meta : metas)
+            {
+                File file = new File(meta.getPath());
+                if (!stored.add(meta.getPath()) || !file.exists())
+                {
+                    ++report.skipped;
+                    continue;
+                }
+
+                Category cat = categories.get(meta.getCategoryName());
+                if (cat == null)
+                {
+                    cat = findOrCreateCategory(meta.getCategoryName());
+                    categories.put(meta.getCategoryName(), cat);
+                }
+
+                Puzzle p = new Puzzle(meta.getPath(), meta.getExpectedOutput(), cat);
+                addHints(p, meta.getHints());
+                PuzzleVerifier.Verification ver = verified.get(meta.getPath());
+                if (ver != null)
+                    p.setVerification(ver.getHash(), ver.getOutput());
+                p.setLastModified(file.lastModified());
+                em.persist(p);
+                ++report.added;
+
+                if (++pending == batchSize)
+                {
+                    em.flush();
+                    em.clear();
+                    // the categories are no longer managed
+                    categories.clear();
+                    pending = 0;
+                }
+            }
+            success = true;
+        }
+        catch (IOException exc)
+        {
+            // the file has just been checked
+            Logger.getLogger(DatabaseService.class.getName()).log(Level.SEVERE, null, exc);
+            return new ImportReport();
+        }
+        finally
+        {
+            if (success)
+                t.commit();
+            else
+                t.rollback();
+        }
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * @param p
+     * @param hints may be null
+     */
+    static void addHints(Puzzle p, List<String> hints)
+    {
+        if (hints != null)
+            for (String hint : hints)
+            {
+                Hint h = new Hint(p, hint);
+                p.addHint(h);
+            }
+    }
+
+    /**
+     * For the other services only
+     * @return the entity manager of the current connection
+     */
+    static EntityManager getEntityManager()
+    {
+        return em;
+    }
+
+    /**
+     * For the services that work on another thread
+     * (an entity manager must not be shared by threads)
+     * 
+     * @return a new entity manager on the current connection
+     */
+    static EntityManager createEntityManager()
+    {
+        return emf.createEntityManager();
+    }
+
     /**
      * Remove the puzzle with given name from db
      * 
@@ -203,9 +569,9 @@ public class DatabaseService
      */
     public static boolean removePuzzle(String filePath)
     {
-        int count = em.createQuery("DELETE FROM Puzzle p WHERE p.filePath = :filePath", Puzzle.class)
-                     .setParameter("filePath", filePath)
-                     .executeUpdate();
+        int count = queries.update(Puzzle.DELETE_BY_PATH)
+                           .setParameter("filePath", filePath)
+                           .executeUpdate();
         return (count == 0 ? false : true);
     }
     
@@ -218,6 +584,23 @@ public class DatabaseService
         em.persist(p);
         em.getTransaction().commit();
     }
+    /**
+     * @param username
+     * @return the user of the given name, or null if there is none
+     */
+    public static User getUser(String username)
+    {
+        return getUser(queries, username);
+    }
+
+    static User getUser(QueryRegistry queries, String username)
+    {
+        List<User> found = queries.get(User.FIND_BY_NAME, User.class)
+                                  .setParameter("username", username)
+                                  .getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
     /**
      * 
      * @param username
@@ -225,9 +608,9 @@ public class DatabaseService
      */
     public static boolean usernameExists(String username)
     {
-        List<User> exist = em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                       .setParameter("username", username)
-                       .getResultList();
+        List<User> exist = queries.get(User.FIND_BY_NAME, User.class)
+                                  .setParameter("username", username)
+                                  .getResultList();
         
         if (exist.size() > 0)
             return true;
@@ -309,9 +692,9 @@ public class DatabaseService
      */
     public static Category getCategory(String catName)
     {
-        List<Category> exist = em.createQuery("SELECT c FROM Category c WHERE c.name = :name", Category.class)
-                       .setParameter("name", catName)
-                       .getResultList();
+        List<Category> exist = queries.get(Category.FIND_BY_NAME, Category.class)
+                                      .setParameter("name", catName)
+                                      .getResultList();
         
         if (exist.size() > 0)
             return exist.get(0);
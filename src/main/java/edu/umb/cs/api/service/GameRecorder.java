@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.entity.Game;
+import edu.umb.cs.entity.GameTelemetry;
+import edu.umb.cs.entity.Puzzle;
+import edu.umb.cs.entity.User;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+/**
+ * Records the results of games in the background.
+ * 
+ * Results are put on a bounded queue, which never blocks (if it is full,
+ * the result is dropped and logged). A writer thread, with its own entity
+ * manager, takes them off in batches and persists each batch (games and
+ * scores) in one transaction.
+ * 
+ * shutdown() waits for what is still on the queue to be written.
+ */
+public class GameRecorder
+{
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * How often (in milliseconds) the writer checks whether it must stop
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    /**
+     * The result of a game, as recorded by the UI
+     * (only plain values: entities belong to another thread's entity manager)
+     */
+    public static class GameResult
+    {
+        private final String username;
+        private final long puzzleId;
+        private final long points;
+        private final long timestamp;
+        private final GameTelemetry telemetry;
+
+        /**
+         * @param username
+         * @param puzzleId
+         * @param points
+         * @param timestamp number of seconds since epoch when the game ended
+         * @param telemetry how the game was played
+         */
+        public GameResult(String username, long puzzleId, long points,
+                          long timestamp, GameTelemetry telemetry)
+        {
+            this.username = username;
+            this.puzzleId = puzzleId;
+            this.points = points;
+            this.timestamp = timestamp;
+            this.telemetry = telemetry;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        public long getPuzzleId()
+        {
+            return puzzleId;
+        }
+
+        public long getPoints()
+        {
+            return points;
+        }
+
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public GameTelemetry getTelemetry()
+        {
+            return telemetry;
+        }
+    }
+
+    private final BlockingQueue<GameResult> queue;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean stopping = false;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public GameRecorder()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param capacity maximum number of results waiting to be written
+     * @param batchSize maximum number of results written in one transaction
+     */
+    public GameRecorder(int capacity, int batchSize)
+    {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        }, "game-recorder");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Start the writer (the database connection must be open)
+     */
+    public void start()
+    {
+        writer.start();
+    }
+
+    /**
+     * @param result
+     * @return true if the result has been queued, false if it has been dropped
+     *         (the queue is full, or the recorder is shutting down)
+     */
+    public boolean record(GameResult result)
+    {
+        if (stopping || !queue.offer(result))
+        {
+            dropped.incrementAndGet();
+            Logger.getLogger(GameRecorder.class.getName())
+                  .log(Level.WARNING, "Game of {0} on puzzle {1} not recorded",
+                       new Object[] {result.getUsername(), result.getPuzzleId()});
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stop taking results, and wait for the queued ones to be written
+     * 
+     * @param timeout maximum time to wait, in milliseconds
+     * @return true if everything has been written
+     */
+    public boolean shutdown(long timeout)
+    {
+        stopping = true;
+        if (!writer.isAlive())
+            return queue.isEmpty();
+        try
+        {
+            writer.join(timeout);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive();
+    }
+
+    /**
+     * @return number of results written to the database so far
+     */
+    public long getWrittenCount()
+    {
+        return written.get();
+    }
+
+    /**
+     * @return number of results that could not be queued or written
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of results waiting to be written
+     */
+    public int getPendingCount()
+    {
+        return queue.size();
+    }
+
+    private void drain()
+    {
+        EntityManager em = DatabaseService.createEntityManager();
+        QueryRegistry queries = new QueryRegistry(em);
+        List<GameResult> batch = new ArrayList<>(batchSize);
+        try
+        {
+            while (true)
+            {
+                GameResult first;
+                try
+                {
+                    first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ex)
+                {
+                    // only stops once the queue has been written out
+                    stopping = true;
+                    continue;
+                }
+                if (first == null)
+                {
+                    if (stopping)
+                        break;
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(em, queries, batch);
+                batch.clear();
+                // the written entities are not needed anymore
+                em.clear();
+            }
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+
+    private void write(EntityManager em, QueryRegistry queries, List<GameResult> batch)
+    {
+        EntityTransaction t = em.getTransaction();
+        int skipped = 0;
+        try
+        {
+            t.begin();
+            Map<String, User> users = new HashMap<>();
+            for (GameResult r : batch)
+            {
+                User u = users.get(r.getUsername());
+                if (u == null)
+                {
+                    u = DatabaseService.getUser(queries, r.getUsername());
+                    users.put(r.getUsername(), u);
+                }
+                Puzzle p = em.find(Puzzle.class, r.getPuzzleId());
+                if (u == null || p == null)
+                {
+                    // removed since the game was played
+                    ++skipped;
+                    continue;
+                }
+                DatabaseService.recordGame(em, queries,
+                                           new Game(u, p, r.getPoints(), r.getTimestamp(),
+                                                    r.getTelemetry()));
+            }
+            t.commit();
+            written.addAndGet(batch.size() - skipped);
+            dropped.addAndGet(skipped);
+        }
+        catch (RuntimeException ex)
+        {
+            Logger.getLogger(GameRecorder.class.getName())
+                  .log(Level.SEVERE, "Cannot record " + batch.size() + " game(s)", ex);
+            if (t.isActive())
+                t.rollback();
+            dropped.addAndGet(batch.size());
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.api.APIs;
+import edu.umb.cs.entity.Puzzle;
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.ShuffledSource;
+import edu.umb.cs.source.SourceFile;
+import java.io.FileNotFoundException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+
+/**
+ * Prepares the next puzzles in the background: each is loaded (with its
+ * hints), parsed and shuffled ahead of time, so that starting or skipping
+ * a puzzle does not wait for any of it.
+ * 
+ * The puzzles are taken in the order of the given ids, wrapping around 
+ * at the end. The work is done by a single thread, with its own entity
+ * manager; the puzzles handed out are detached.
+ * 
+ * When the bracing style or difficulty changes (See prepareWith), the
+ * puzzles already prepared are prepared again in the background. One
+ * still prepared otherwise than asked for by next() is parsed and
+ * shuffled again, on the caller's thread.
+ */
+public class PuzzlePrefetcher
+{
+    public static final int DEFAULT_DEPTH = 2;
+
+    /**
+     * A puzzle ready to be played
+     */
+    public static class PreparedPuzzle
+    {
+        private final Puzzle puzzle;
+        private final SourceFile original;
+        private final ShuffledSource shuffled;
+        private final BracingStyle style;
+        private final int difficulty;
+
+        PreparedPuzzle(Puzzle puzzle, SourceFile original, ShuffledSource shuffled,
+                       BracingStyle style, int difficulty)
+        {
+            this.puzzle = puzzle;
+            this.original = original;
+            this.shuffled = shuffled;
+            this.style = style;
+            this.difficulty = difficulty;
+        }
+
+        public Puzzle getPuzzle()
+        {
+            return puzzle;
+        }
+
+        public SourceFile getOriginal()
+        {
+            return original;
+        }
+
+        public ShuffledSource getShuffled()
+        {
+            return shuffled;
+        }
+
+        public BracingStyle getStyle()
+        {
+            return style;
+        }
+
+        public int getDifficulty()
+        {
+            return difficulty;
+        }
+    }
+
+    /**
+     * Told when a puzzle has been prepared, on the prefetch thread
+     * (eg., for the UI to draw its tokens ahead of time)
+     */
+    public interface Listener
+    {
+        void prepared(PreparedPuzzle puzzle);
+    }
+
+    private final List<Long> ids;
+    private final int depth;
+    private final Listener listener;
+    private final ExecutorService executor;
+    private final Deque<Future<PreparedPuzzle>> ahead = new ArrayDeque<>();
+    private int nextId = 0;
+    private volatile BracingStyle style;
+    private volatile int difficulty;
+
+    // only used by the prefetch thread
+    private EntityManager em;
+    private QueryRegistry queries;
+
+    /**
+     * Starts preparing the first puzzles right away
+     * (the database connection must be open)
+     * 
+     * @param ids ids of the puzzles to play, in order
+     * @param style
+     * @param difficulty percentage of the tokens to remove
+     * @param depth number of puzzles prepared ahead
+     * @param listener told of each puzzle prepared, may be null
+     */
+    public PuzzlePrefetcher(List<Long> ids, BracingStyle style, int difficulty,
+                            int depth, Listener listener)
+    {
+        if (depth < 1)
+            throw new IllegalArgumentException("depth must be positive: " + depth);
+        this.ids = new ArrayList<>(ids);
+        this.style = style;
+        this.difficulty = difficulty;
+        this.depth = depth;
+        this.listener = listener;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "puzzle-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        synchronized (this)
+        {
+            fill();
+        }
+    }
+
+    /**
+     * @param style
+     * @param difficulty
+     * @return the next puzzle, prepared with the given style and difficulty
+     *         (waits for it if it is not ready yet), or null if there is none
+     * @throws ParseException
+     * @throws FileNotFoundException 
+     */
+    public synchronized PreparedPuzzle next(BracingStyle style, int difficulty)
+                    throws ParseException, FileNotFoundException
+    {
+        this.style = style;
+        this.difficulty = difficulty;
+
+        // skip the puzzles removed since their ids were read
+        for (int n = 0; n < ids.size(); ++n)
+        {
+            Future<PreparedPuzzle> head = ahead.poll();
+            if (head == null)
+                return null;    // shut down
+            fill();
+            PreparedPuzzle ret = get(head);
+            if (ret == null)
+                continue;
+            if (ret.getStyle() != style || ret.getDifficulty() != difficulty)
+                ret = prepare(ret.getPuzzle(), style, difficulty);
+            return ret;
+        }
+        return null;
+    }
+
+    /**
+     * Prepare the puzzles with the given style and difficulty from now on,
+     * including those already prepared
+     * 
+     * @param style
+     * @param difficulty percentage of the tokens to remove
+     */
+    public synchronized void prepareWith(BracingStyle style, int difficulty)
+    {
+        if (style == this.style && difficulty == this.difficulty)
+            return;
+        this.style = style;
+        this.difficulty = difficulty;
+
+        // the tasks not started yet will use the new settings anyway
+        List<Future<PreparedPuzzle>> old = new ArrayList<>(ahead);
+        ahead.clear();
+        for (final Future<PreparedPuzzle> f : old)
+            ahead.add(executor.submit(new Callable<PreparedPuzzle>()
+            {
+                @Override
+                public PreparedPuzzle call() throws Exception
+                {
+                    PreparedPuzzle ret = get(f);
+                    BracingStyle style = PuzzlePrefetcher.this.style;
+                    int difficulty = PuzzlePrefetcher.this.difficulty;
+                    if (ret == null || ret.getStyle() == style && ret.getDifficulty() == difficulty)
+                        return ret;
+                    ret = prepare(ret.getPuzzle(), style, difficulty);
+                    if (listener != null)
+                        listener.prepared(ret);
+                    return ret;
+                }
+            }));
+    }
+
+    /**
+     * Stop preparing puzzles (those under way are dropped)
+     */
+    public void shutdown()
+    {
+        synchronized (this)
+        {
+            for (Future<PreparedPuzzle> f : ahead)
+                f.cancel(false);
+            ahead.clear();
+        }
+        try
+        {
+            executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (em != null && em.isOpen())
+                        em.close();
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // already shut down
+        }
+        executor.shutdown();
+    }
+
+    private void fill()
+    {
+        while (!ids.isEmpty() && ahead.size() < depth)
+        {
+            final long id = ids.get(nextId);
+            nextId = (nextId + 1) % ids.size();
+            ahead.add(executor.submit(new Callable<PreparedPuzzle>()
+            {
+                @Override
+                public PreparedPuzzle call() throws Exception
+                {
+                    Puzzle puzzle = load(id);
+                    if (puzzle == null)
+                        return null;
+                    PreparedPuzzle ret = prepare(puzzle, style, difficulty);
+                    if (listener != null)
+                        listener.prepared(ret);
+                    return ret;
+                }
+            }));
+        }
+    }
+
+    private Puzzle load(long id)
+    {
+        if (em == null)
+        {
+            em = DatabaseService.createEntityManager();
+            queries = new QueryRegistry(em);
+        }
+        Puzzle ret = DatabaseService.getPuzzleForPlay(queries, id);
+        // handed to another thread
+        em.clear();
+        return ret;
+    }
+
+    private static PreparedPuzzle prepare(Puzzle puzzle, BracingStyle style, int difficulty)
+                    throws ParseException, FileNotFoundException
+    {
+        SourceFile original = puzzle.getSourceFile(style);
+        return new PreparedPuzzle(puzzle, original, APIs.shuffle(original, difficulty),
+                                  style, difficulty);
+    }
+
+    private static PreparedPuzzle get(Future<PreparedPuzzle> f)
+                    throws ParseException, FileNotFoundException
+    {
+        try
+        {
+            return f.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a puzzle");
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ParseException)
+                throw (ParseException) cause;
+            if (cause instanceof FileNotFoundException)
+                throw (FileNotFoundException) cause;
+            Logger.getLogger(PuzzlePrefetcher.class.getName())
+                  .log(Level.SEVERE, "Cannot prepare puzzle", cause);
+            throw new RuntimeException(cause);
+        }
+    }
+}
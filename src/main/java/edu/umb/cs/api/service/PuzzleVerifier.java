@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.api.APIs;
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.*;
+import edu.umb.cs.source.std.Utils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Import stage that compiles and runs each puzzle's original source once,
+ * so that the expected output stored with the puzzle is the actual one
+ * (the meta data only has room for one line, and is written by hand).
+ * 
+ * Sources are parsed, compiled and run in parallel.
+ * One whose content hash is the same as when it was last verified is not
+ * run again.
+ */
+public class PuzzleVerifier
+{
+    /**
+     * Result of verifying one source file
+     */
+    public static class Verification
+    {
+        private final String hash;
+        private final String output;
+        private final boolean matchesMetaData;
+
+        public Verification(String hash, String output, boolean matchesMetaData)
+        {
+            this.hash = hash;
+            this.output = output;
+            this.matchesMetaData = matchesMetaData;
+        }
+
+        public String getHash()
+        {
+            return hash;
+        }
+
+        /**
+         * @return the output of the original source, null if it could not be run
+         */
+        public String getOutput()
+        {
+            return output;
+        }
+
+        /**
+         * @return true if the output is the one given in the meta data
+         */
+        public boolean matchesMetaData()
+        {
+            return matchesMetaData;
+        }
+    }
+
+    private PuzzleVerifier() {}
+
+    /**
+     * @param metas the puzzles' meta data
+     * @param known earlier verifications, by path (may be empty)
+     * @return the verification of each puzzle, by path
+     *         (those whose file cannot be read are left out)
+     */
+    public static Map<String, Verification> verifyAll(Collection<MetaData> metas,
+                                                      Map<String, Verification> known)
+    {
+        Map<String, Verification> ret = new HashMap<>();
+        if (metas.isEmpty())
+            return ret;
+
+        int threads = Math.min(metas.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<String, Future<Verification>> pending = new LinkedHashMap<>();
+        for (final MetaData meta : metas)
+        {
+            final File file = new File(meta.getPath());
+            final String hash;
+            try
+            {
+                hash = Utils.hash(Files.readAllBytes(file.toPath()));
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(PuzzleVerifier.class.getName())
+                      .log(Level.SEVERE, "Cannot read " + meta.getPath(), ex);
+                continue;
+            }
+
+            Verification old = known.get(meta.getPath());
+            if (old != null && hash.equals(old.getHash()))
+            {
+                ret.put(meta.getPath(), reuse(meta, hash, old));
+                continue;
+            }
+
+            pending.put(meta.getPath(), executor.submit(new Callable<Verification>()
+            {
+                @Override
+                public Verification call()
+                {
+                    return parseAndRun(meta, file, hash);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        for (Map.Entry<String, Future<Verification>> entry : pending.entrySet())
+        {
+            try
+            {
+                ret.put(entry.getKey(), entry.getValue().get());
+            }
+            catch (ExecutionException ex)
+            {
+                Logger.getLogger(PuzzleVerifier.class.getName())
+                      .log(Level.SEVERE, "Cannot verify " + entry.getKey(), ex.getCause());
+            }
+            catch (InterruptedException ex)
+            {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param meta the puzzle's meta data
+     * @param old the last verification of the same file, or null
+     * @return old's output if the file has not changed since,
+     *         the output of running it otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public static Verification verify(MetaData meta, Verification old) throws IOException
+    {
+        File file = new File(meta.getPath());
+        String hash = Utils.hash(Files.readAllBytes(file.toPath()));
+        if (old != null && hash.equals(old.getHash()))
+            return reuse(meta, hash, old);
+
+        return parseAndRun(meta, file, hash);
+    }
+
+    private static Verification reuse(MetaData meta, String hash, Verification old)
+    {
+        return new Verification(hash,
+                                old.getOutput(),
+                                old.getOutput() != null
+                                    && sameOutput(old.getOutput(), meta.getExpectedOutput()));
+    }
+
+    /**
+     * @return the parsed source, or null if it cannot be parsed (or read)
+     */
+    private static SourceFile parse(File file)
+    {
+        try
+        {
+            return SourceFiles.getSourceFile(file, Language.JAVA, BracingStyle.ALLMAN);
+        }
+        catch (ParseException | IOException ex)
+        {
+            Logger.getLogger(PuzzleVerifier.class.getName())
+                  .log(Level.SEVERE, file + " cannot be parsed", ex);
+            return null;
+        }
+    }
+
+    private static Verification parseAndRun(MetaData meta, File file, String hash)
+    {
+        SourceFile src = parse(file);
+        return src == null
+                ? new Verification(hash, null, false)
+                : run(meta, file, hash, src);
+    }
+
+    private static Verification run(MetaData meta, File file, String hash, SourceFile src)
+    {
+        String output = null;
+        Output out = APIs.compile(Utils.toSource(src.getAll()), src.getClassName());
+        if (!out.isConclusive())
+        {
+            // try again next time
+            Logger.getLogger(PuzzleVerifier.class.getName()).log(Level.WARNING,
+                    "{0} could not be verified: {1}", new Object[] {file, out.getOuput()});
+            return new Verification(null, null, false);
+        }
+        if (out.isError())
+            Logger.getLogger(PuzzleVerifier.class.getName()).log(Level.SEVERE,
+                    "{0} does not run:\n{1}", new Object[] {file, out.getOuput()});
+        else
+            output = out.getOuput();
+
+        boolean matches = output != null
+                && sameOutput(output, meta.getExpectedOutput());
+        if (output != null && !matches)
+            Logger.getLogger(PuzzleVerifier.class.getName()).log(Level.WARNING,
+                    "{0}: the output ({1}) is not the one in the meta data ({2})",
+                    new Object[] {file, output.trim(), meta.getExpectedOutput()});
+        return new Verification(hash, output, matches);
+    }
+
+    /**
+     * Compare ignoring the whitespaces at the ends of lines and of the output
+     */
+    static boolean sameOutput(String actual, String fromMeta)
+    {
+        if (fromMeta == null)
+            return false;
+        return actual.replaceAll("[ \\t]+(\\r?\\n)", "$1").trim()
+                .equals(fromMeta.replaceAll("[ \\t]+(\\r?\\n)", "$1").trim());
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * Creates each named query (See the @NamedQuery's on the entities) once
+ * per entity manager and hands out the same query object afterwards, 
+ * so that the JPQL is not parsed again on every call.
+ * 
+ * Like the entity manager, this is not thread-safe. Parameters are kept
+ * between calls, so every one of them must be set again before running 
+ * a query.
+ */
+final class QueryRegistry
+{
+    private final EntityManager em;
+    private final Map<String, Query> queries = new HashMap<>();
+
+    QueryRegistry(EntityManager em)
+    {
+        this.em = em;
+    }
+
+    /**
+     * @param name name of the query
+     * @param type type of the results (must be the same on every call with this name)
+     * @return the typed query of the given name
+     */
+    @SuppressWarnings("unchecked")
+    <T> TypedQuery<T> get(String name, Class<T> type)
+    {
+        Query q = queries.get(name);
+        if (q == null)
+        {
+            q = em.createNamedQuery(name, type);
+            queries.put(name, q);
+        }
+        return (TypedQuery<T>) q;
+    }
+
+    /**
+     * @param name name of an UPDATE or DELETE query
+     * @return the query of the given name
+     */
+    Query update(String name)
+    {
+        Query q = queries.get(name);
+        if (q == null)
+        {
+            q = em.createNamedQuery(name);
+            queries.put(name, q);
+        }
+        return q;
+    }
+}
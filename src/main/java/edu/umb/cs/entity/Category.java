@@ -31,8 +31,22 @@ import javax.persistence.*;
  * Last modified:       
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = Category.FIND_ALL, query = "SELECT c FROM Category c"),
+    @NamedQuery(name = Category.FIND_BY_NAME,
+                query = "SELECT c FROM Category c WHERE c.name = :name"),
+    @NamedQuery(name = Category.DELETE_ALL, query = "DELETE FROM Category c"),
+    @NamedQuery(name = Category.SUMMARIES,
+                query = "SELECT NEW edu.umb.cs.api.CategorySummary(p.category.name, COUNT(p))"
+                        + " FROM Puzzle p GROUP BY p.category.name ORDER BY p.category.name")
+})
 public class Category 
 {
+    public static final String FIND_ALL = "Category.findAll";
+    public static final String FIND_BY_NAME = "Category.findByName";
+    public static final String DELETE_ALL = "Category.deleteAll";
+    public static final String SUMMARIES = "Category.summaries";
+
     @Id
     @GeneratedValue (strategy = GenerationType.AUTO)
     private int id;
@@ -40,7 +54,7 @@ public class Category
     private String name;
     
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE},
-               fetch = FetchType.EAGER, mappedBy = "category")
+               fetch = FetchType.LAZY, mappedBy = "category")
     private Set<Puzzle> puzzles;
     
     public Category()
@@ -65,6 +79,11 @@ public class Category
         this.puzzles.add(p);
     }
     
+    public void removePuzzle(Puzzle p)
+    {
+        this.puzzles.remove(p);
+    }
+
     public int puzzlesCount()
     {
         return puzzles.size();
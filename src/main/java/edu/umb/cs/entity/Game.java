@@ -21,8 +21,6 @@
 
 package edu.umb.cs.entity;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import javax.persistence.*;
 
 /**
@@ -31,8 +29,17 @@ import javax.persistence.*;
  * Last modified:       
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = Game.HISTORY,
+                query = "SELECT g FROM Game g JOIN FETCH g.puzzle"
+                        + " WHERE g.user = :user ORDER BY g.timestamp DESC"),
+    @NamedQuery(name = Game.DELETE_ALL, query = "DELETE FROM Game g")
+})
 public class Game 
 {
+    public static final String HISTORY = "Game.history";
+    public static final String DELETE_ALL = "Game.deleteAll";
+
     @Id
     @GeneratedValue (strategy = GenerationType.AUTO)
     private int id;
@@ -49,6 +56,9 @@ public class Game
      * Number of seconds since epoch
      */
     private long timestamp;
+
+    @Embedded
+    private GameTelemetry telemetry;
     
     public Game()
     {
@@ -56,15 +66,24 @@ public class Game
     }
     
     public Game(User u, Puzzle p)
+    {
+        this(u, p, 0, System.currentTimeMillis() / 1000L, new GameTelemetry());
+    }
+
+    /**
+     * @param u
+     * @param p
+     * @param point
+     * @param timestamp number of seconds since epoch when the game ended
+     * @param telemetry how the game was played
+     */
+    public Game(User u, Puzzle p, long point, long timestamp, GameTelemetry telemetry)
     {
         user = u;
         puzzle = p;
-        point = 0;
-        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        calendar.clear();
-        calendar.set(2011, Calendar.OCTOBER, 1);
-        timestamp = calendar.getTimeInMillis() / 1000L;
-        
+        this.point = point;
+        this.timestamp = timestamp;
+        this.telemetry = telemetry;
     }
     
     public User getUser()
@@ -86,6 +105,16 @@ public class Game
     {
         point = p;
     }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public GameTelemetry getTelemetry()
+    {
+        return telemetry;
+    }
     
     public int hashCode()
     {
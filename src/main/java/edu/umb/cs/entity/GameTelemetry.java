@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.entity;
+
+import javax.persistence.Embeddable;
+
+/**
+ * Where the time of a game went, and how much the user did.
+ * Times are measured with System.nanoTime (See TelemetryRecorder).
+ */
+@Embeddable
+public class GameTelemetry 
+{
+    /**
+     * From the start of the game to the end, pauses included
+     */
+    private long totalNanos;
+
+    /**
+     * Time spent on the pause (and other) screens
+     */
+    private long pausedNanos;
+
+    private int pauses;
+
+    /**
+     * Time spent waiting on compilations
+     */
+    private long compileWaitNanos;
+
+    /**
+     * Number of solutions submitted
+     */
+    private int attempts;
+
+    /**
+     * Number of tokens dragged and dropped
+     */
+    private int moves;
+
+    public GameTelemetry()
+    {
+        
+    }
+
+    public GameTelemetry(long totalNanos, long pausedNanos, int pauses,
+                         long compileWaitNanos, int attempts, int moves)
+    {
+        this.totalNanos = totalNanos;
+        this.pausedNanos = pausedNanos;
+        this.pauses = pauses;
+        this.compileWaitNanos = compileWaitNanos;
+        this.attempts = attempts;
+        this.moves = moves;
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    public long getPausedNanos()
+    {
+        return pausedNanos;
+    }
+
+    /**
+     * @return time the game was on screen (ie., not paused)
+     */
+    public long getActiveNanos()
+    {
+        return totalNanos - pausedNanos;
+    }
+
+    public int getPauses()
+    {
+        return pauses;
+    }
+
+    public long getCompileWaitNanos()
+    {
+        return compileWaitNanos;
+    }
+
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    public int getMoves()
+    {
+        return moves;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("active: %d ms, paused: %d ms (%d), compiling: %d ms, attempts: %d, moves: %d",
+                             getActiveNanos() / 1000000, pausedNanos / 1000000, pauses,
+                             compileWaitNanos / 1000000, attempts, moves);
+    }
+}
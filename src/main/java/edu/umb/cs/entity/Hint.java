@@ -30,8 +30,11 @@ import javax.persistence.*;
  * Last modified:       
  */
 @Entity
+@NamedQuery(name = Hint.DELETE_ALL, query = "DELETE FROM Hint h")
 public class Hint implements Serializable 
 {
+    public static final String DELETE_ALL = "Hint.deleteAll";
+
     @Id
     @GeneratedValue (strategy = GenerationType.AUTO)
     private int id;
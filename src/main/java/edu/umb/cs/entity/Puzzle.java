@@ -42,8 +42,29 @@ import javax.persistence.*;
  * Last modified:       
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = Puzzle.FIND_ALL, query = "SELECT p FROM Puzzle p"),
+    @NamedQuery(name = Puzzle.FIND_BY_PATH,
+                query = "SELECT p FROM Puzzle p WHERE p.filePath = :filePath"),
+    @NamedQuery(name = Puzzle.ALL_PATHS, query = "SELECT p.filePath FROM Puzzle p"),
+    @NamedQuery(name = Puzzle.IDS_BY_CATEGORY,
+                query = "SELECT p.id FROM Puzzle p WHERE p.category.name IN :names ORDER BY p.id"),
+    @NamedQuery(name = Puzzle.FIND_FOR_PLAY,
+                query = "SELECT DISTINCT p FROM Puzzle p LEFT JOIN FETCH p.hints WHERE p.id = :id"),
+    @NamedQuery(name = Puzzle.DELETE_ALL, query = "DELETE FROM Puzzle p"),
+    @NamedQuery(name = Puzzle.DELETE_BY_PATH,
+                query = "DELETE FROM Puzzle p WHERE p.filePath = :filePath")
+})
 public class Puzzle implements Serializable 
 {
+    public static final String FIND_ALL = "Puzzle.findAll";
+    public static final String FIND_BY_PATH = "Puzzle.findByPath";
+    public static final String ALL_PATHS = "Puzzle.allPaths";
+    public static final String IDS_BY_CATEGORY = "Puzzle.idsByCategory";
+    public static final String FIND_FOR_PLAY = "Puzzle.findForPlay";
+    public static final String DELETE_ALL = "Puzzle.deleteAll";
+    public static final String DELETE_BY_PATH = "Puzzle.deleteByPath";
+
     /**
      * The id of the puzzle
      */
@@ -70,15 +91,30 @@ public class Puzzle implements Serializable
     private String prettyName;
     
     private String expectedResult;
+
+    /**
+     * Hash of the source file's content when it was last verified
+     */
+    private String sourceHash;
+
+    /**
+     * Output of the original source, null if it could not be run
+     */
+    private String verifiedOutput;
+
+    /**
+     * Last modification time of the source file when it was imported
+     */
+    private long lastModified;
     
     private int lang = langType.ordinal();
     
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, 
-                          fetch = FetchType.EAGER, mappedBy = "puzzle")
+                          fetch = FetchType.LAZY, mappedBy = "puzzle")
     private Set<Game> games;
  
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, 
-                          fetch = FetchType.EAGER, mappedBy = "puzzle")
+                          fetch = FetchType.LAZY, mappedBy = "puzzle")
     private Set<Hint> hints;
  
     @ManyToOne(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
@@ -90,6 +126,17 @@ public class Puzzle implements Serializable
     }
     
     public Puzzle (String path, String expRes, String catName) throws IOException, ParseException
+    {
+        this(path, expRes, DatabaseService.findOrCreateCategory(catName));
+    }
+
+    /**
+     * @param path
+     * @param expRes
+     * @param cat a category that has already been looked up (or created)
+     * @throws IOException if the file does not exist
+     */
+    public Puzzle (String path, String expRes, Category cat) throws IOException
     {
         File file = new File(path);
         if (!file.exists())
@@ -100,7 +147,7 @@ public class Puzzle implements Serializable
         expectedResult = expRes;
         games = new HashSet<>();
         hints = new HashSet<>();
-        category = DatabaseService.findOrCreateCategory(catName);
+        category = cat;
         category.addPuzzle(this);
     }
     
@@ -126,6 +173,7 @@ public class Puzzle implements Serializable
     public void addHint(Hint h)
     {
         hints.add(h);
+        cachedHints = null;
     }
     
     /**
@@ -135,6 +183,7 @@ public class Puzzle implements Serializable
     public void removeHint(Hint h)
     {
         hints.remove(h);
+        cachedHints = null;
     }
     
     public List<Hint> getHints()
@@ -144,9 +193,78 @@ public class Puzzle implements Serializable
         return cachedHints;
     }
     
+    /**
+     * @return the output of the original source if it has been verified,
+     *         the one given in the meta data otherwise
+     */
     public String getExpectedOutput()
     {
-        return expectedResult;
+        return verifiedOutput != null ? verifiedOutput : expectedResult;
+    }
+
+    public String getFilePath()
+    {
+        return filePath;
+    }
+
+    public Category getCategory()
+    {
+        return category;
+    }
+
+    /**
+     * Move this puzzle to the given category
+     * @param cat 
+     */
+    public void setCategory(Category cat)
+    {
+        if (category != null)
+            category.removePuzzle(this);
+        category = cat;
+        cat.addPuzzle(this);
+    }
+
+    /**
+     * @param expRes expected result, as given in the meta data
+     */
+    public void setMetaDataOutput(String expRes)
+    {
+        expectedResult = expRes;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified(long time)
+    {
+        lastModified = time;
+    }
+
+    public String getSourceHash()
+    {
+        return sourceHash;
+    }
+
+    public boolean isVerified()
+    {
+        return verifiedOutput != null;
+    }
+
+    /**
+     * @param hash hash of the source file's content
+     * @param output output of the original source (null if it could not be run)
+     */
+    public void setVerification(String hash, String output)
+    {
+        sourceHash = hash;
+        verifiedOutput = output;
+    }
+
+    public long getId()
+    {
+        return id;
     }
 
     @Override
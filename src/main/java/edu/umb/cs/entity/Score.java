@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.entity;
+
+import javax.persistence.*;
+
+/**
+ * Points a user has earned on a puzzle, summed over all the games.
+ * 
+ * Kept up to date as games are recorded (See DatabaseService.recordGame),
+ * so that scores and leaderboards never walk the games themselves.
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = Score.FIND,
+                query = "SELECT s FROM Score s WHERE s.user = :user AND s.puzzle = :puzzle"),
+    @NamedQuery(name = Score.TOP_USERS,
+                query = "SELECT NEW edu.umb.cs.api.LeaderboardEntry(s.user.username, SUM(s.points))"
+                        + " FROM Score s GROUP BY s.user.username ORDER BY SUM(s.points) DESC"),
+    @NamedQuery(name = Score.TOP_USERS_IN_CATEGORY,
+                query = "SELECT NEW edu.umb.cs.api.LeaderboardEntry(s.user.username, SUM(s.points))"
+                        + " FROM Score s WHERE s.puzzle.category.name = :name"
+                        + " GROUP BY s.user.username ORDER BY SUM(s.points) DESC"),
+    @NamedQuery(name = Score.DELETE_BY_PUZZLE, query = "DELETE FROM Score s WHERE s.puzzle = :puzzle"),
+    @NamedQuery(name = Score.DELETE_ALL, query = "DELETE FROM Score s")
+})
+public class Score 
+{
+    public static final String FIND = "Score.find";
+    public static final String TOP_USERS = "Score.topUsers";
+    public static final String TOP_USERS_IN_CATEGORY = "Score.topUsersInCategory";
+    public static final String DELETE_BY_PUZZLE = "Score.deleteByPuzzle";
+    public static final String DELETE_ALL = "Score.deleteAll";
+
+    @Id
+    @GeneratedValue (strategy = GenerationType.AUTO)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Puzzle puzzle;
+
+    private long points;
+
+    private int games;
+
+    public Score()
+    {
+        
+    }
+
+    public Score(User user, Puzzle puzzle)
+    {
+        this.user = user;
+        this.puzzle = puzzle;
+    }
+
+    /**
+     * Count one more game
+     * @param point points earned in the game
+     */
+    public void addGame(long point)
+    {
+        points += point;
+        ++games;
+    }
+
+    public User getUser()
+    {
+        return user;
+    }
+
+    public Puzzle getPuzzle()
+    {
+        return puzzle;
+    }
+
+    public long getPoints()
+    {
+        return points;
+    }
+
+    /**
+     * @return number of games played
+     */
+    public int getGames()
+    {
+        return games;
+    }
+}
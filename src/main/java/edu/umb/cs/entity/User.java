@@ -21,6 +21,7 @@
 
 package edu.umb.cs.entity;
 
+import edu.umb.cs.api.service.DatabaseService;
 import java.io.Serializable;
 import java.util.*;
 import javax.persistence.*;
@@ -32,8 +33,18 @@ import javax.persistence.*;
  * Last modified:       
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = User.FIND_ALL, query = "SELECT u FROM User u"),
+    @NamedQuery(name = User.FIND_BY_NAME,
+                query = "SELECT u FROM User u WHERE u.username = :username"),
+    @NamedQuery(name = User.DELETE_ALL, query = "DELETE FROM User u")
+})
 public class User   implements Serializable 
 {
+    public static final String FIND_ALL = "User.findAll";
+    public static final String FIND_BY_NAME = "User.findByName";
+    public static final String DELETE_ALL = "User.deleteAll";
+
     @Id
     @GeneratedValue (strategy = GenerationType.AUTO)
     private int id;
@@ -41,8 +52,13 @@ public class User   implements Serializable
     private String username;
     
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.PERSIST}, 
-                          fetch = FetchType.EAGER, mappedBy = "user")
+                          fetch = FetchType.LAZY, mappedBy = "user")
     private Set<Game> games;
+
+    /**
+     * Sum of the points of all the games
+     */
+    private long points;
     
     public User()
     {
@@ -60,6 +76,11 @@ public class User   implements Serializable
         games.add(g);
     }
     
+    public void removeGame(Game g)
+    {
+        games.remove(g);
+    }
+
     public Set<Game> getGames()
     {
         return Collections.unmodifiableSet(games);
@@ -71,11 +92,17 @@ public class User   implements Serializable
      */
     public long getPoints()
     {
-        long points = 0;
-        for (Game g : games)
-            points += g.getPoint();
         return points;
     }
+
+    /**
+     * Called when a game is recorded or removed
+     * @param p points to add (or take away, if negative)
+     */
+    public void addPoints(long p)
+    {
+        points += p;
+    }
     
     /**
      * 
@@ -84,13 +111,8 @@ public class User   implements Serializable
      */
     public long getPointsForPuzzle(Puzzle puzzle)
     {
-        long points = 0;
-        for (Game g : games)
-        {
-            if (g.getPuzzle().equals(puzzle))
-                points += g.getPoint();
-        }
-        return points;
+        Score score = DatabaseService.getScore(this, puzzle);
+        return score == null ? 0 : score.getPoints();
     }
 
     public String getUsername()
@@ -23,14 +23,25 @@ package edu.umb.cs.gui;
 
 import edu.umb.cs.Tokanagrammar;
 import edu.umb.cs.api.APIs;
-import edu.umb.cs.entity.Category;
+import edu.umb.cs.api.CategorySummary;
+import edu.umb.cs.api.CompileFuture;
+import edu.umb.cs.api.Session;
+import edu.umb.cs.api.TelemetryRecorder;
+import edu.umb.cs.api.SolutionVerifier;
+import edu.umb.cs.api.service.PuzzlePrefetcher;
+import edu.umb.cs.api.service.PuzzlePrefetcher.PreparedPuzzle;
 import edu.umb.cs.entity.Hint;
 import edu.umb.cs.entity.Puzzle;
 import edu.umb.cs.gui.screens.SecondaryScreen;
 import edu.umb.cs.parser.BracingStyle;
 import edu.umb.cs.source.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -40,6 +51,7 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.util.Duration;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -67,17 +79,38 @@ public class GUI {
 	
 	private int curDifficulty;
 
-        private List<Category> categories;
+        private List<CategorySummary> categories;
 
         private List<SourceToken> tokenBayTokens;
         
 	private List<SourceToken> tokenBoardTokens;
 	
-	private List<Category> curCategories;
+	private List<CategorySummary> curCategories;
         
-        private Iterator<Puzzle> puzzlesIter;
+        /** ids of the puzzles in the current categories (each is loaded when played) */
+        private List<Long> puzzleIds;
 
-        private Set<Puzzle> puzzles;
+        /** prepares the next puzzles of the current categories in the background */
+        private PuzzlePrefetcher prefetcher;
+
+        /** draws the tokens of each puzzle prefetched, as soon as the FX thread is free */
+        private static final PuzzlePrefetcher.Listener prerenderer = new PuzzlePrefetcher.Listener()
+        {
+            @Override
+            public void prepared(final PreparedPuzzle puzzle)
+            {
+                Platform.runLater(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ShuffledSource src = puzzle.getShuffled();
+                        LHSTokenIconizer.prerender(src.getShuffledSource(), src.getRemovedTokens());
+                        RHSTokenIconizer.prerender(src.getRemovedTokens());
+                    }
+                });
+            }
+        };
 
         private static BracingStyle curBracingStyle = BracingStyle.ALLMAN;
 
@@ -93,6 +126,19 @@ public class GUI {
         private static int curHint = 0;
 
         private static ShuffledSource currentSource;
+
+        private static CompileFuture pendingCompile;
+
+        private static SolutionVerifier verifier;
+
+        // index of the last syntax error reported, -1 if none
+        private static int lastSyntaxError = -1;
+
+        private static Session session;
+
+        // how the current puzzle is being played, and whether it has been solved
+        private static TelemetryRecorder telemetry = new TelemetryRecorder();
+        private static boolean solved = false;
         
         private static final Font defaultFont = new Font(14);
 	private GUI(){}
@@ -150,13 +196,16 @@ public class GUI {
             if (newGame || curPuzzle == null || currentSource == null)
             {
                 SourceFile orig = null;
+                ShuffledSource shuffled = null;
                 try
                 {
-                    // wrap-around to the beginning of the collection
-                    if (!puzzlesIter.hasNext())
-                        puzzlesIter = puzzles.iterator();
-                    curPuzzle = puzzlesIter.next();
-                    orig = curPuzzle.getSourceFile(curBracingStyle);
+                    // parsed and shuffled ahead of time (wraps around at the end)
+                    PreparedPuzzle next = prefetcher.next(curBracingStyle, curDifficulty);
+                    if (next == null)
+                        throw new NoSuchElementException("no puzzle in the chosen categories");
+                    curPuzzle = next.getPuzzle();
+                    orig = next.getOriginal();
+                    shuffled = next.getShuffled();
                 }
                 catch (Exception ex)
                 {
@@ -166,7 +215,10 @@ public class GUI {
 
                 if (orig != null)
                 {
-                    currentSource = edu.umb.cs.api.APIs.shuffle(orig, curDifficulty);
+                    currentSource = shuffled;
+                    verifier = new SolutionVerifier(currentSource);
+                    telemetry = new TelemetryRecorder();
+                    solved = false;
 
                     tokenBayTokens = currentSource.getRemovedTokens();
 
@@ -205,6 +257,7 @@ public class GUI {
         }
 
         timer.start();
+        telemetry.resume();
         inGame = true;
 
         initButtons(activeButtons.get(curGameState));
@@ -219,6 +272,7 @@ public class GUI {
 	 */
 	public void pauseGame(SecondaryScreen screen){
 		timer.stop();
+		telemetry.pause();
 		blurOn();
 		screen.setupScreen();
 	}
@@ -325,6 +379,15 @@ public class GUI {
                 //Stop the timer to save the user precious ms while
                 //compiling -- restart it immediatly below if there are errors.
                 timer.stop();	
+                telemetry.attempt();
+
+                // putting back the original source needs no compilation
+                List<SourceToken> board = boardTokens();
+                if (verifier != null && verifier.matchesOriginal(board))
+                {
+                    showOutput(new Output(curPuzzle.getExpectedOutput(), false));
+                    return;
+                }
 
                 // build the content of the file
                 // (ie., just dump it to a string)
@@ -335,63 +398,187 @@ public class GUI {
                     if (srcTk.kind() != SourceTokenKind.EMPTY)
                         bd.append(tk.getSourceToken().image());
                 }
+
+                // no need to compile what cannot even be parsed
+                SyntaxCheck check = APIs.checkSyntax(board);
+                if (check.getStatus() == SyntaxCheck.Status.INVALID)
+                {
+                    reportSyntaxError(check);
+                    timer.start();
+                    return;
+                }
                 enableStopButton();
                 
                 final JFrame waitPopup = new WaitWindow();
                 waitPopup.setVisible(true);
-                compileTask.src = bd.toString();
-                new Thread(compileTask).start();
-                try
+
+                // the compilation happens in the background, and whatever
+                // ends it (result, stop button or TIME_OUT) is handled on the FX thread
+                final CompileFuture compile = APIs.compileAsync(bd.toString(),
+                                                                currentSource.getOrinalSource().getClassName());
+                pendingCompile = compile;
+                telemetry.compileStarted();
+                final PauseTransition deadline = new PauseTransition(Duration.millis(TIME_OUT));
+                deadline.setOnFinished(new EventHandler<ActionEvent>()
                 {
-                    // wait for compilation
-                    synchronized(COMPILE_LOCK)
-                    {
-                        COMPILE_LOCK.wait(TIME_OUT);
-                    }
-                    System.out.println("done compiling:");
-                    Output out = compileTask.out;
-                    if (out == null)
-                    {
-                        waitPopup.dispose();
-                        blurOff();
-                        outputPanel.compilerMessage("Compilation took too long! Please try again!");
-                    }
-                    else if (out.isError())
+                    @Override
+                    public void handle(ActionEvent event)
                     {
-                        outputPanel.compilerMessage("The program has the following errors:");
-                        outputPanel.compilerMessage(out.getOuput());
-                        timer.start();
+                        if (compile.cancel(true))
+                            outputPanel.compilerMessage("Compilation took too long! Please try again!");
                     }
-                    else
+                });
+                compile.addListener(new CompileFuture.Listener()
+                {
+                    @Override
+                    public void done(final CompileFuture finished)
                     {
-                        if (out.getOuput().equals(curPuzzle.getExpectedOutput()))
-                        {
-                            outputPanel.infoMessage("Congratulations! You have successfully solved the puzzle!");
-                            outputPanel.infoMessage("The output is:\n-----");
-                            outputPanel.outputText(out.getOuput());
-                            outputPanel.infoMessage("-----");
-                        }
-                        else
+                        Platform.runLater(new Runnable()
                         {
-                            outputPanel.compilerMessage("Your program's output does NOT match the expected! Please try again");
-                        }
-                        // TODO: record score
-                        timer.stop();
+                            @Override
+                            public void run()
+                            {
+                                deadline.stop();
+                                waitPopup.dispose();
+                                compileDone(finished);
+                            }
+                        });
                     }
-                    waitPopup.dispose();
-                    disableStopButton();
-                    blurOff();
+                });
+                deadline.play();
+	}
+
+        /**
+         * Show the result of the given compilation, once it is done
+         */
+        private void compileDone(CompileFuture compile)
+        {
+                if (pendingCompile == compile)
+                    pendingCompile = null;
+                telemetry.compileFinished();
+                System.out.println("done compiling:");
+                blurOff();
+
+                if (compile.isCancelled())
+                {
+                    // stopped, or took too long
+                    initButtons(activeButtons.get(GameState.FULL_LHS));
+                    timer.start();
+                    return;
+                }
+
+                Output out;
+                try
+                {
+                    out = compile.get();
                 }
-                catch (InterruptedException ex)
+                catch (InterruptedException | ExecutionException ex)
                 {
                     outputPanel.compilerMessage("Something went wrong!");
                     ex.printStackTrace();
-                    
-                    // recover
-                    waitPopup.dispose();
-                    blurOff();
+                    initButtons(activeButtons.get(GameState.FULL_LHS));
+                    timer.start();
+                    return;
                 }
-	}
+                showOutput(out);
+        }
+
+        /**
+         * Tell the user whether the program's output is the expected one
+         */
+        private void showOutput(Output out)
+        {
+                if (out.isError())
+                {
+                    outputPanel.compilerMessage("The program has the following errors:");
+                    outputPanel.compilerMessage(out.getOuput());
+                    timer.start();
+                }
+                else
+                {
+                    if (out.getOuput().equals(curPuzzle.getExpectedOutput()))
+                    {
+                        outputPanel.infoMessage("Congratulations! You have successfully solved the puzzle!");
+                        outputPanel.infoMessage("The output is:\n-----");
+                        outputPanel.outputText(out.getOuput());
+                        outputPanel.infoMessage("-----");
+                        recordGame();
+                    }
+                    else
+                    {
+                        outputPanel.compilerMessage("Your program's output does NOT match the expected! Please try again");
+                    }
+                    timer.stop();
+                }
+                disableStopButton();
+        }
+	
+        /**
+         * Record the current puzzle as solved (once), in the background
+         */
+        private void recordGame()
+        {
+                if (solved)
+                    return;
+                solved = true;
+                // the recorder drops games when its queue is full, or it is stopping
+                if (session == null
+                        || !session.newGame(curPuzzle, currentSource.removedCount(), telemetry.finish()))
+                    outputPanel.compilerMessage("This game could not be recorded: its points will not be counted");
+        }
+
+        /**
+         * Set the session games are recorded in (See Tokanagrammar.start).
+         * Creating one looks up the user in the database, hence it is not
+         * done on the first game solved
+         * @param newSession
+         */
+        public static void setSession(Session newSession)
+        {
+                session = newSession;
+        }
+
+        /**
+         * Called after each token dragged and dropped
+         */
+        public void tokenMoved()
+        {
+                telemetry.move();
+        }
+
+        /**
+         * Check the tokens placed so far (without compiling),
+         * and tell the user about a new syntax error.
+         * Called after each move.
+         */
+        public void checkPartialSolution()
+        {
+                SyntaxCheck check = APIs.checkSyntax(boardTokens());
+                if (check.getStatus() != SyntaxCheck.Status.INVALID)
+                    lastSyntaxError = -1;
+                else if (check.getTokenIndex() != lastSyntaxError)
+                    reportSyntaxError(check);
+        }
+
+        private void reportSyntaxError(SyntaxCheck check)
+        {
+                lastSyntaxError = check.getTokenIndex();
+                List<LHSIconizedToken> tokens = GameBoard.getInstance().getTokenBoardItokens();
+                if (lastSyntaxError < 0)
+                    outputPanel.compilerMessage("Syntax error: " + check.getMessage());
+                else
+                    outputPanel.compilerMessage("Syntax error near token #" + (lastSyntaxError + 1)
+                                                + ": " + tokens.get(lastSyntaxError).getSourceToken().image());
+        }
+
+        private static List<SourceToken> boardTokens()
+        {
+                List<LHSIconizedToken> iTokens = GameBoard.getInstance().getTokenBoardItokens();
+                List<SourceToken> tokens = new ArrayList<>(iTokens.size());
+                for (LHSIconizedToken tk : iTokens)
+                    tokens.add(tk.getSourceToken());
+                return tokens;
+        }
 	
 	/**
 	 * Enable stop button.
@@ -414,9 +601,13 @@ public class GUI {
 	 * Use this as a fail safe to stop compiling (avoids stack overflow etc).
 	 */
 	public void stopCompile(){
-//		Text text = new Text("Stop button needs to be hooked up -- enable WHILE COMPILING ONLY");
-//		System.out.println("Stop button needs to be hooked up -- enable WHILE COMPILING ONLY");
-//		outputPanel.writeNodes(text);
+		// the buttons and the timer are restored once the compilation
+		// has actually stopped (See compileDone())
+		CompileFuture compile = pendingCompile;
+		if (compile != null && compile.cancel(true)){
+			outputPanel.compilerMessage("Compilation stopped.");
+			return;
+		}
 		
 		//Last, send the user back to the full LHS pseudo state and restart the timer.
 		initButtons(activeButtons.get(GameState.FULL_LHS));
@@ -509,7 +700,7 @@ public class GUI {
 	/**
 	 * Get the current categories being played
 	 */
-	public List<Category> getCurCategories(){
+	public List<CategorySummary> getCurCategories(){
 		return curCategories;
 	}
 	
@@ -549,37 +740,38 @@ public class GUI {
         public void setCurBracingStyle(BracingStyle style)
         {
             curBracingStyle = style;
+            if (prefetcher != null)
+                prefetcher.prepareWith(curBracingStyle, curDifficulty);
         }
 	/**
 	 * Set the current difficulty
 	 */
 	public void setCurDifficulty(int curDifficulty){
 		this.curDifficulty = curDifficulty;
+		if (prefetcher != null)
+			prefetcher.prepareWith(curBracingStyle, curDifficulty);
 	}
 	
 	/**
 	 * Set the current categories being played.
 	 */
-	public void setCurCategories(List<Category> categories){
+	public void setCurCategories(List<CategorySummary> categories){
 		this.curCategories = categories;
-                puzzles = new HashSet<Puzzle>();
-                for (Category c : categories)
-                    puzzles.addAll(c.getPuzzles());
-                
-                puzzlesIter = puzzles.iterator();
+                puzzleIds = APIs.getPuzzleIds(categories);
+                prefetcher = APIs.prefetch(puzzleIds, curBracingStyle, curDifficulty, prerenderer);
 	}
 	
 	/**
 	 * Set the AVAILABLE categories
 	 */
-	public void setAvailableCategories(List<Category> categories){
+	public void setAvailableCategories(List<CategorySummary> categories){
 		this.categories = categories;
 	}
 	
-        public List<Category> getAvailableCategories()
+        public List<CategorySummary> getAvailableCategories()
         {
             if (categories == null)
-                categories = APIs.getCategories();
+                categories = APIs.getCategorySummaries();
             return categories;
         }
 	/**
@@ -690,30 +882,7 @@ public class GUI {
             }
         }
         
-        private static class CompileTask implements Runnable
-        {
-            Output out;
-            String src;
-            CompileTask(String src)
-            {
-                this.src = src;
-            }
-            @Override
-            public void run()
-            {
-                out = edu.umb.cs.api.APIs.compile(src,
-                                                  currentSource.getOrinalSource().getClassName());
-                
-                synchronized(COMPILE_LOCK)
-                {
-                    COMPILE_LOCK.notifyAll();
-                }
-            }   
-        }
- 
         private static final JLabel hourGlass = getHourGlass();
-        private static final Object COMPILE_LOCK = 0;
-        private static final CompileTask compileTask = new CompileTask(null);
         private static final String WAIT_ICON_PATH = "/images/ui/hourglass.gif";
         private static JLabel getHourGlass()
         {
@@ -29,15 +29,33 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.Pane;
 import javafx.util.Duration;
 
+/**
+ * Shows the time spent on the current puzzle, in whole seconds.
+ * 
+ * The time itself comes from System.nanoTime(), so it is exact whatever
+ * the animation does; the Timeline only wakes up once per second, just 
+ * after the displayed second changes, to refresh the label.
+ */
 public class GUITimer {
 	
-	private static Integer milliseconds;
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	/** the label is refreshed this long after a second has elapsed, so that it never lags behind */
+	private static final long REFRESH_MARGIN_MILLIS = 5;
+	private static final String PREFIX = "       \t ";
+	
+	/** time counted before the timer was last started */
+	private static long accumulatedNanos;
+	/** System.nanoTime() when the timer was last started, or -1 if it is not running */
+	private static long runningSince = -1;
+	/** second shown on the label, -1 if none yet */
+	private static long shownSecond = -1;
+	/** reused to format hh:mm:ss */
+	private static final char[] text = (PREFIX + "00:00:00").toCharArray();
+	
 	static Label label = new Label();
 	static Timeline digitalTime; 		//timer listener
 	static Pane pane;
 	
-	//private String timerState = "";
-	
 	public enum TimerState {
 		RUNNING,
 		STOPPED,
@@ -56,25 +74,13 @@ public class GUITimer {
 	
 	{
 		pane  = Controller.getTimer();
-		milliseconds = 0;
 		digitalTime = new Timeline(
-				new KeyFrame(Duration.seconds(0),
+				new KeyFrame(Duration.seconds(1),
 						new EventHandler<ActionEvent>() {
 					@Override public void handle(ActionEvent actionEvent) {
-						Integer second = (milliseconds / 100) % 60;
-						Integer minute = ((milliseconds / 100) /60) % 60;
-						Integer hour = (((milliseconds / 100) /60) / 60) % 100;
-						String hourString   = pad(2, '0', hour.toString());
-						String minuteString = pad(2, '0', minute.toString());
-						String secondString = pad(2, '0', second.toString());
-						label.setText("       \t " + hourString + ":" + minuteString + ":" + secondString);// + ":" + msString);
-						
-						milliseconds++;
+						refresh();
 					}
-				}
-						),
-						new KeyFrame(Duration.seconds(0.01)) //0.01 second per tick
-				);
+				}));
 		digitalTime.setCycleCount(Animation.INDEFINITE);
 		
 		
@@ -85,37 +91,80 @@ public class GUITimer {
 		pane.getChildren().add(label);
 	}
 	
+	/**
+	 * Time counted so far, in nanoseconds
+	 */
+	public long getElapsedNanos(){
+		return runningSince < 0
+				? accumulatedNanos
+				: accumulatedNanos + System.nanoTime() - runningSince;
+	}
 	
-	private static String pad(int fieldWidth, char padChar, String s) {
-			StringBuilder sb = new StringBuilder();
-			for (int i = s.length(); i < fieldWidth; i++) {
-				sb.append(padChar);
-			}
-			sb.append(s);
+	/**
+	 * Update the label, if the displayed second has changed
+	 */
+	private void refresh(){
+		long second = getElapsedNanos() / NANOS_PER_SECOND;
+		if (second == shownSecond)
+			return;
+		shownSecond = second;
+		
+		int pos = PREFIX.length();
+		pos = putTwoDigits(pos, (second / 3600) % 100);
+		pos = putTwoDigits(pos + 1, (second / 60) % 60);
+		putTwoDigits(pos + 1, second % 60);
+		label.setText(new String(text));
+	}
 	
-			return sb.toString();
+	private static int putTwoDigits(int pos, long value){
+		text[pos] = (char) ('0' + value / 10);
+		text[pos + 1] = (char) ('0' + value % 10);
+		return pos + 2;
 	}
+	
 	public void start(){
 		curTimerState = TimerState.RUNNING;
 		label.setVisible(true);
+		if (runningSince < 0)
+			runningSince = System.nanoTime();
+		refresh();
+		
+		// wake up right after the next second
+		long toNextSecond = NANOS_PER_SECOND - getElapsedNanos() % NANOS_PER_SECOND;
+		digitalTime.stop();
+		digitalTime.setDelay(Duration.millis(toNextSecond / 1000000 + REFRESH_MARGIN_MILLIS));
 		digitalTime.play();
 	}
 
 	public void stop(){
 		curTimerState = TimerState.STOPPED;
-		digitalTime.stop();
+		halt();
 	}
 	public void pause(){
 		curTimerState = TimerState.PAUSED;
-		digitalTime.stop();
+		halt();
 	}
 	public void reset(){
 		curTimerState = TimerState.STOPPED;
 		digitalTime.stop();
-		milliseconds = 0;
+		runningSince = -1;
+		accumulatedNanos = 0;
+		shownSecond = -1;
 		hideTimer();
 	}
 	
+	/**
+	 * Stop counting, keeping the time counted so far
+	 */
+	private void halt(){
+		digitalTime.stop();
+		if (runningSince >= 0) {
+			accumulatedNanos += System.nanoTime() - runningSince;
+			runningSince = -1;
+		}
+		refresh();
+	}
+	
 	public void hideTimer()
 	{
 		label.setVisible(false);
@@ -27,6 +27,8 @@ import edu.umb.cs.source.std.SourceTokenBase;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -80,6 +82,14 @@ public class GameBoard {
 	
 	private static List<LHSIconizedToken> tokenBoardItokens;
 	
+	/**
+	 * Sources with more lines than this are shown on a virtualized board,
+	 * which only puts the lines in view in the scene (0: always virtualize).
+	 */
+	static final int VIRTUAL_BOARD_LINES = Integer.getInteger("tokanagrammar.virtualBoardLines", 200);
+	
+	private static VirtualTokenBoard virtualBoard;
+	
 	/**Places the tokens in the tokenBoard by calling settleTokenBoard**/
 	public void initTokenBoard(SourceFile src){
 		
@@ -91,10 +101,26 @@ public class GameBoard {
 		scrollPane.setStyle("-fx-background-color: transparent;");
 		
 		ldzChildren.add(scrollPane);
-		lhsLineContainer.setPadding(new Insets(0, 5, 0, 5));		
-		scrollPane.setContent(lhsLineContainer);
+		if (src.lineCount() > VIRTUAL_BOARD_LINES) {
+			virtualBoard = new VirtualTokenBoard(scrollPane, TOKENBOARD_ROWHEIGHT);
+			scrollPane.setContent(virtualBoard.getContent());
+		} else {
+			virtualBoard = null;
+			lhsLineContainer.setPadding(new Insets(0, 5, 0, 5));		
+			scrollPane.setContent(lhsLineContainer);
+		}
 
+		long start = System.nanoTime();
 		tokenBoardItokens = settleTokenBoard(src);
+		Logger logger = Logger.getLogger(GameBoard.class.getName());
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine(String.format("Token board built in %d ms (%d tokens, image cache hit rate: %.1f%%, %d images)",
+					(System.nanoTime() - start) / 1000000, tokenBoardItokens.size(),
+					TokenImageCache.getHitRate() * 100, TokenImageCache.size()));
+			if (virtualBoard != null)
+				logger.fine(String.format("Virtualized board: %d line cells for %d lines",
+						virtualBoard.getCellCount(), virtualBoard.getLineCount()));
+		}
 	}
 	
         public void refreshTokenBoard()
@@ -104,6 +130,10 @@ public class GameBoard {
         
 	public void resetTokenBoard(){
 		lhsLines.removeAll(lhsLines);
+		if (virtualBoard != null) {
+			virtualBoard.clear();
+			virtualBoard = null;
+		}
 		
 		tokenBoardItokens.removeAll(tokenBoardItokens);
                 
@@ -119,32 +149,48 @@ public class GameBoard {
         {
             List<LHSIconizedToken> ret = new ArrayList<>(src.tokenCount());
             
-            HBox line = new HBox();
-            Label lineNumber = new Label(1 + "");
             int lineCount = src.lineCount();
             
             for (int lineIndex = 0; lineIndex < lineCount; ++lineIndex)
             {
-                line.setMinHeight(30);
-        	lineNumber = new Label(lineIndex + 1 + ((lineIndex + 1 + "").length() == 1 ? "   " : " "));
-                lineNumber.setStyle("-fx-fill:black; -fx-padding: 0, 0, 0, 0;");
-
-                line.getChildren().add(lineNumber);
-                
+                List<ImageView> views = new ArrayList<>();
                 for (SourceToken curToken : src.getTokens(lineIndex))
                 {
                 	final LHSIconizedToken iconizedCurTok = LHSTokenIconizer.iconizeToken(curToken);
                 	ret.add(iconizedCurTok);
+                	views.add(iconizedCurTok.getImgView());
+                }
+                
+                if (virtualBoard != null)
+                    virtualBoard.addLine(views);
+                else
+                {
+                    HBox line = new HBox();
+                    line.setMinHeight(TOKENBOARD_ROWHEIGHT);
+                    Label lineNumber = new Label(lineNumberText(lineIndex));
+                    lineNumber.setStyle("-fx-fill:black; -fx-padding: 0, 0, 0, 0;");
 
-                	ImageView imgView = iconizedCurTok.getImgView();
-                	line.getChildren().add(imgView);
+                    line.getChildren().add(lineNumber);
+                    line.getChildren().addAll(views);
+                    lhsLines.add(line);
                 }
-                lhsLines.add(line);
-                line = new HBox();
             }
             
+            if (virtualBoard != null)
+                virtualBoard.layoutLines();
+            
             return ret;
         }
+        
+        /**
+         * @param lineIndex
+         * @return the line number shown in front of a line (padded for short numbers)
+         */
+        static String lineNumberText(int lineIndex)
+        {
+            String number = Integer.toString(lineIndex + 1);
+            return number + (number.length() == 1 ? "   " : " ");
+        }
 	
 	//--------------------------------------------------------------------------
 	//TOKEN BAY 
@@ -21,7 +21,6 @@
 
 package edu.umb.cs.gui;
 
-import edu.umb.cs.Tokanagrammar;
 import edu.umb.cs.source.SourceToken;
 import edu.umb.cs.source.SourceTokenKind;
 import edu.umb.cs.source.std.EmptyToken;
@@ -163,6 +162,7 @@ public class LHSIconizedToken extends IconizedToken{
 								 * BECOMES OCCUPIED
 								 */
 								occupyEmptySpace(imgView);
+								// the board is checked once the source is emptied (on drag done)
 
 								success = true;
 							}
@@ -278,11 +278,14 @@ public class LHSIconizedToken extends IconizedToken{
 				List<LHSIconizedToken> iTokens = GameBoard.getInstance().getTokenBoardItokens();
 				if (event.getTransferMode() == TransferMode.MOVE) {
 
-					LHSIconizedToken element = iTokens.remove(index);
-					iTokens.add(index, new LHSIconizedToken(element.getImage(), EmptyToken.INSTANCE, index));
+					Image empty = LHSTokenIconizer.emptySlotImage();
+					iTokens.remove(index);
+					iTokens.add(index, new LHSIconizedToken(empty, EmptyToken.INSTANCE, index));
 
-					imgView.setImage(new Image(Tokanagrammar.class.getResourceAsStream("/images/ui/tokens/removed_.fw.png")));
+					imgView.setImage(empty);
 					occupied = false;
+					GUI.getInstance().tokenMoved();
+					GUI.getInstance().checkPartialSolution();
 				}
 				event.consume();
 			}
@@ -20,25 +20,15 @@
  */
 package edu.umb.cs.gui;
 
+import edu.umb.cs.gui.TokenImageCache.Style;
+import edu.umb.cs.source.SourceFile;
 import edu.umb.cs.source.SourceToken;
 import edu.umb.cs.source.SourceTokenKind;
 import edu.umb.cs.source.std.EmptyToken;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.FontMetrics;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.util.*;
-
-import javafx.embed.swing.SwingFXUtils;
+import java.util.List;
+import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 
-import javax.imageio.ImageIO;
-import static edu.umb.cs.source.SourceTokenKind.*;
-
 /**
  * Handles the tokens that go on the LHS
  * @author Matt
@@ -46,31 +36,11 @@ import static edu.umb.cs.source.SourceTokenKind.*;
  */
 public class LHSTokenIconizer {
 	
-	final static int TOKEN_HEIGHT = 20; //token height is always the same
-	final static int MIN_WIDTH = 32;	//the minimum token width
-	
-	final static Font TOKEN_FONT = new Font("Courier New", Image.SCALE_DEFAULT, 12);
+	final static int TOKEN_HEIGHT = TokenRenderer.TOKEN_HEIGHT;
+	final static int MIN_WIDTH = TokenRenderer.MIN_WIDTH;
 	
 	private static int index;
 	
-	static final Map<SourceTokenKind, Color> tokenFontColors = computeColorsMap();
-	
-	
-        private static Map<SourceTokenKind, Color> computeColorsMap()
-        {
-            EnumMap<SourceTokenKind, Color> ret = new EnumMap<>(SourceTokenKind.class);
-
-            Color orange = new Color (206, 123, 0);
-            ret.put(KEYWORD, Color.blue);
-            ret.put(NUM_LITERAL, Color.black);
-            ret.put(CHAR_LITERAL, orange);
-            ret.put(IDENTIFIER, Color.black);
-            ret.put(STRING_LITERAL, orange);
-            ret.put(SEPARATOR, Color.black);
-            ret.put(OPERATOR, Color.black);
-            return Collections.unmodifiableMap(ret);
-        }
-
         /**
          * Take a token and makes a graphic representation of it.
          * @param token
@@ -78,43 +48,71 @@ public class LHSTokenIconizer {
          */
         public static LHSIconizedToken iconizeToken(SourceToken token){
 
+        	WritableImage writableImage = TokenImageCache.get(Style.BOARD, token);
+        	if (writableImage == null)
+        		writableImage = TokenImageCache.put(Style.BOARD, token, drawToken(token));
+
+        	return new LHSIconizedToken(writableImage, token, index++);
+        }
+
+        /**
+         * Draw a token as dealt on the LHS (See iconizeToken)
+         */
+        private static WritableImage drawToken(SourceToken token){
+
         	SourceTokenKind tokenKind = token.kind();
-        	BufferedImage image = null; 
-        	BufferedImage finalImage = null;
-        	Graphics graphics = null;
-
-        	try{ 
-        		if(tokenKind == SourceTokenKind.EMPTY)
-        			image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/removed_.fw.png"));
-        		else
-        			image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/noop_.fw.png"));
-
-        	} catch(IOException e){
-        		e.printStackTrace();
-        	}
+        	Image image = null; 
 
-        	graphics = image.getGraphics();
-        	FontMetrics fm = graphics.getFontMetrics(TOKEN_FONT);
+        	if(tokenKind == SourceTokenKind.EMPTY)
+        		image = TokenImageCache.baseImage("images/ui/tokens/removed_.fw.png");
+        	else
+        		image = TokenImageCache.baseImage("images/ui/tokens/noop_.fw.png");
 
         	switch(tokenKind)
         	{
         	case EMPTY:
-        		finalImage = finalizeImage(image, EmptyToken.INSTANCE,TOKEN_HEIGHT, MIN_WIDTH, Image.SCALE_DEFAULT);
-        		break;
+        		return TokenRenderer.render(image, token, MIN_WIDTH);
 
         	case TAB:
-        		finalImage = finalizeImage(image, token,TOKEN_HEIGHT, 20 , Image.SCALE_DEFAULT);
-        		break;
+        		return TokenRenderer.render(image, token, 20);
 
         	default:
-        		finalImage = finalizeImage(image, token,TOKEN_HEIGHT, fm.stringWidth(token.image()), Image.SCALE_DEFAULT);
+        		return TokenRenderer.render(image, token, Math.max(1, TokenRenderer.textWidth(token.image())));
         	}
-
-        	WritableImage writableImage = SwingFXUtils.toFXImage(finalImage, null);
-
-        	return new LHSIconizedToken(writableImage, token, index++);
         }
 	
+	/**
+	 * @return the image of an empty slot of the board, as dealt
+	 *         (shared with the dealt EMPTY tokens, drawn once)
+	 */
+	public static WritableImage emptySlotImage(){
+
+		WritableImage writableImage = TokenImageCache.get(Style.BOARD, EmptyToken.INSTANCE);
+		if (writableImage == null)
+			writableImage = TokenImageCache.put(Style.BOARD, EmptyToken.INSTANCE,
+			                                    drawToken(EmptyToken.INSTANCE));
+		return writableImage;
+	}
+	
+	/**
+	 * Draw ahead of time the images of a board that is about to be dealt:
+	 * its tokens as dealt, and the removed ones as dropped back on it.
+	 * Must be called on the FX thread.
+	 * @param board the shuffled source
+	 * @param removed the tokens taken out of it
+	 */
+	public static void prerender(SourceFile board, List<SourceToken> removed){
+		
+		for (int line = 0; line < board.lineCount(); ++line)
+			for (SourceToken token : board.getTokens(line))
+				if (!TokenImageCache.contains(Style.BOARD, token))
+					TokenImageCache.put(Style.BOARD, token, drawToken(token));
+
+		for (SourceToken token : removed)
+			if (!TokenImageCache.contains(Style.BOARD_PLACED, token))
+				TokenImageCache.put(Style.BOARD_PLACED, token, drawPlacedToken(token));
+	}
+	
 	/**
 	 * Creates a "pretty" clear token so the user can tell it's a placed token.
 	 * @param token
@@ -122,99 +120,56 @@ public class LHSTokenIconizer {
 	 */
 	public static LHSIconizedToken createSingleIconizedToken(SourceToken token, int newIndex){
 
-            SourceTokenKind kind = token.kind();
-            BufferedImage image = null; 
-            BufferedImage finalImage = null;
-            Graphics graphics = null;
-            int imagePadding = 20;
-            
-            try
-            {
-                switch(kind)
-                {
-                    case KEYWORD:
-                        image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentPink.fw.png"));
-                        break;
-                        
-                    case IDENTIFIER:
-                        image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentGreen.fw.png"));
-                        break;
-                        
-                    case STRING_LITERAL:
-                    case CHAR_LITERAL:
-                    case NUM_LITERAL:
-                        image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentGreen.fw.png"));
-                        break;
-                        
-                    case SEPARATOR:
-                        image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentYellow.fw.png"));
-                        break;
-                        
-                    case OPERATOR:
-                        image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentPurple.fw.png"));
-                        break;
-                        
-                    default:
-                        System.out.println("Unexpected token kind: " + kind);
-                        // TODO: handle error
-                }
-            }
-            catch (IOException e)
-            {
-                e.printStackTrace();
-            }
-            
-            graphics = image.getGraphics();
-            FontMetrics fm = graphics.getFontMetrics(TOKEN_FONT);
-            
-   
-
-            if(fm.stringWidth(token.image()) < 25 || token.kind() == SourceTokenKind.EMPTY)
-                finalImage = finalizeImage(image, token,TOKEN_HEIGHT, MIN_WIDTH, Image.SCALE_DEFAULT);
-            else
-                finalImage = finalizeImage(image, token,TOKEN_HEIGHT, fm.stringWidth(token.image()) + imagePadding, Image.SCALE_DEFAULT);
-            
-            WritableImage writableImage = SwingFXUtils.toFXImage(finalImage, null);
+            WritableImage writableImage = TokenImageCache.get(Style.BOARD_PLACED, token);
+            if (writableImage == null)
+                writableImage = TokenImageCache.put(Style.BOARD_PLACED, token, drawPlacedToken(token));
 
             return new LHSIconizedToken(writableImage, token, newIndex);
 	}
 
-	
 	/**
-	 * Resizes an image, adds the string text, and adds occurrence subscript.
-	 * @param originalImage
-	 * @param height
-	 * @param width
-	 * @param type
-	 * @return an image worth putting in the LDZ
+	 * Draw a token dropped on the LHS (See createSingleIconizedToken)
 	 */
-	private static BufferedImage finalizeImage(	Image originalImage, 
-			SourceToken token, 
-			int height, 
-			int width, 
-			int type){
+	private static WritableImage drawPlacedToken(SourceToken token){
 
-		String tokenImage = token.image();
-		SourceTokenKind kind = token.kind();
-
-		BufferedImage resizedImage = new BufferedImage(width, height, type);
-		Graphics2D g = resizedImage.createGraphics();
-		FontMetrics fm = g.getFontMetrics(TOKEN_FONT);
-
-		int strWidth = (fm.stringWidth(tokenImage));
-		int imageWidth = resizedImage.getWidth();
-
-		int textBegin = (imageWidth - strWidth) / 2;
-		int textHeight = (fm.getAscent() + (TOKEN_HEIGHT - (fm.getAscent() + fm.getDescent())) / 2 );
-
-		g.drawImage(originalImage, 0, 0, width, height, null);
-		g.setColor(tokenFontColors.get(kind));
-		g.setFont(TOKEN_FONT);
-		if (kind != SourceTokenKind.EMPTY)
-			g.drawString(tokenImage, textBegin, textHeight);
-
-		g.dispose();
-		return resizedImage;
+            SourceTokenKind kind = token.kind();
+            Image image = null; 
+            int imagePadding = 20;
+            
+            switch(kind)
+            {
+                case KEYWORD:
+                    image = TokenImageCache.baseImage("images/ui/tokens/lucentPink.fw.png");
+                    break;
+                    
+                case IDENTIFIER:
+                    image = TokenImageCache.baseImage("images/ui/tokens/lucentGreen.fw.png");
+                    break;
+                    
+                case STRING_LITERAL:
+                case CHAR_LITERAL:
+                case NUM_LITERAL:
+                    image = TokenImageCache.baseImage("images/ui/tokens/lucentGreen.fw.png");
+                    break;
+                    
+                case SEPARATOR:
+                    image = TokenImageCache.baseImage("images/ui/tokens/lucentYellow.fw.png");
+                    break;
+                    
+                case OPERATOR:
+                    image = TokenImageCache.baseImage("images/ui/tokens/lucentPurple.fw.png");
+                    break;
+                    
+                default:
+                    System.out.println("Unexpected token kind: " + kind);
+                    // TODO: handle error
+            }
+            
+            int textWidth = TokenRenderer.textWidth(token.image());
+            if(textWidth < 25 || token.kind() == SourceTokenKind.EMPTY)
+                return TokenRenderer.render(image, token, MIN_WIDTH);
+            else
+                return TokenRenderer.render(image, token, textWidth + imagePadding);
 	}
     
     // temp
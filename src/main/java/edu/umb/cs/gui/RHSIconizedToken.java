@@ -182,6 +182,8 @@ public class RHSIconizedToken extends IconizedToken{
 		            }else{
 		            	theGUI.disableCompileButton();
 		            }
+		            theGUI.tokenMoved();
+		            theGUI.checkPartialSolution();
 		        }
 		        event.consume();
 		    }
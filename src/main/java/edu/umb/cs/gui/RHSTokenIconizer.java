@@ -21,21 +21,13 @@
 
 package edu.umb.cs.gui;
 
-import java.awt.Font;
-import java.awt.FontMetrics;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
-import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 
-import javax.imageio.ImageIO;
-
+import edu.umb.cs.gui.TokenImageCache.Style;
 import edu.umb.cs.source.SourceToken;
 import edu.umb.cs.source.SourceTokenKind;
 
@@ -44,10 +36,8 @@ import edu.umb.cs.source.SourceTokenKind;
  */
 public class RHSTokenIconizer {
 	
-    final static int TOKEN_HEIGHT = 20; //token height is always the same
-    final static int MIN_WIDTH = 32;	//the minimum token width
-    
-    final static Font tokenFont = new Font("Courier New", Image.SCALE_DEFAULT, 12);
+    final static int TOKEN_HEIGHT = TokenRenderer.TOKEN_HEIGHT; //token height is always the same
+    final static int MIN_WIDTH = TokenRenderer.MIN_WIDTH;	//the minimum token width
 	
     private static int index;
 
@@ -79,57 +69,70 @@ public class RHSTokenIconizer {
 	 
     private static RHSIconizedToken iconizeToken(SourceToken token)
     {
+        WritableImage writableImage = TokenImageCache.get(Style.BAY, token);
+        if (writableImage == null)
+            writableImage = TokenImageCache.put(Style.BAY, token, drawToken(token));
+
+        return new RHSIconizedToken(writableImage, token, index++);
+    }
 
+    /**
+     * Draw a token as dealt on the RHS (See iconizeToken)
+     */
+    private static WritableImage drawToken(SourceToken token)
+    {
         SourceTokenKind kind = token.kind();
-        BufferedImage image = null;
-        BufferedImage finalImage = null;
-        Graphics graphics = null;
+        Image image = null;
         int imagePadding = 20;
 
-        try
+        switch(kind)
         {
-            switch(kind)
-            {
-                case KEYWORD:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/ui_token_pink.fw.png"));
-                    break;
-                case IDENTIFIER:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/ui_token_green.fw.png"));
-                    break;
-                case STRING_LITERAL:
-                case NUM_LITERAL:
-                case CHAR_LITERAL:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/ui_token_green.fw.png"));
-                    break;                    
-                case SEPARATOR:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/ui_token_yellow.fw.png"));
-                    break;
-                case OPERATOR:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/ui_token_purple.fw.png"));
-                    break;
-                    
-                default:
-                    System.out.println("Unsupported token: " + kind);
-            }
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
+            case KEYWORD:
+                image = TokenImageCache.baseImage("images/ui/tokens/ui_token_pink.fw.png");
+                break;
+            case IDENTIFIER:
+                image = TokenImageCache.baseImage("images/ui/tokens/ui_token_green.fw.png");
+                break;
+            case STRING_LITERAL:
+            case NUM_LITERAL:
+            case CHAR_LITERAL:
+                image = TokenImageCache.baseImage("images/ui/tokens/ui_token_green.fw.png");
+                break;                    
+            case SEPARATOR:
+                image = TokenImageCache.baseImage("images/ui/tokens/ui_token_yellow.fw.png");
+                break;
+            case OPERATOR:
+                image = TokenImageCache.baseImage("images/ui/tokens/ui_token_purple.fw.png");
+                break;
+                
+            default:
+                System.out.println("Unsupported token: " + kind);
         }
 
-        graphics = image.getGraphics();
-        FontMetrics fm = graphics.getFontMetrics(tokenFont);
+        int textWidth = TokenRenderer.textWidth(token.image());
 
-        if (fm.stringWidth(token.image()) < 25)
-            finalImage = finalizeImage(image, token, TOKEN_HEIGHT, MIN_WIDTH, Image.SCALE_DEFAULT);
+        if (textWidth < 25)
+            return TokenRenderer.render(image, token, MIN_WIDTH);
         else
-            finalImage = finalizeImage(image, token, TOKEN_HEIGHT, fm.stringWidth(token.image()) + imagePadding, Image.SCALE_DEFAULT);
-
-        WritableImage writableImage = SwingFXUtils.toFXImage(finalImage, null);
-
-        return new RHSIconizedToken(writableImage, token, index++);
+            return TokenRenderer.render(image, token, textWidth + imagePadding);
     }
 	
+    /**
+     * Draw ahead of time the images of the tokens about to be dealt on the RHS
+     * (as dealt and as put back). Must be called on the FX thread.
+     * @param tokens
+     */
+    public static void prerender(List<SourceToken> tokens)
+    {
+        for (SourceToken token : tokens)
+        {
+            if (!TokenImageCache.contains(Style.BAY, token))
+                TokenImageCache.put(Style.BAY, token, drawToken(token));
+            if (!TokenImageCache.contains(Style.BAY_PLACED, token))
+                TokenImageCache.put(Style.BAY_PLACED, token, drawPlacedToken(token));
+        }
+    }
+
 	/**
 	 * Creates a "pretty" clear token so the user can tell it's a placed token.
 	 * @param token
@@ -137,96 +140,54 @@ public class RHSTokenIconizer {
 	 */
     public static RHSIconizedToken createSingleIconizedToken(SourceToken token, int newIndex)
     {
+        WritableImage writableImage = TokenImageCache.get(Style.BAY_PLACED, token);
+        if (writableImage == null)
+            writableImage = TokenImageCache.put(Style.BAY_PLACED, token, drawPlacedToken(token));
+        
+        return new RHSIconizedToken(writableImage, token, newIndex);
+    }
 
+    /**
+     * Draw a token put back on the RHS (See createSingleIconizedToken)
+     */
+    private static WritableImage drawPlacedToken(SourceToken token)
+    {
         SourceTokenKind kind = token.kind();
-        BufferedImage image = null;
-        BufferedImage finalImage = null;
-        Graphics graphics = null;
+        Image image = null;
         
-        try
+        switch(kind)
         {
-            switch(kind)
-            {
-                case KEYWORD:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentPink.fw.png"));
-                    break;
-                case IDENTIFIER:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentGreen.fw.png"));
-                    break;
-                case STRING_LITERAL:
-                case NUM_LITERAL:
-                case CHAR_LITERAL:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentGreen.fw.png"));
-                    break;                    
-                case SEPARATOR:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentYellow.fw.png"));
-                    break;
-                case OPERATOR:
-                    image = ImageIO.read(Thread.currentThread().getContextClassLoader().getResourceAsStream("images/ui/tokens/lucentPurple.fw.png"));
-                    break;
-                    
-                default:
-                    System.out.println("Unsupported token: " + kind);
-            }
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
+            case KEYWORD:
+                image = TokenImageCache.baseImage("images/ui/tokens/lucentPink.fw.png");
+                break;
+            case IDENTIFIER:
+                image = TokenImageCache.baseImage("images/ui/tokens/lucentGreen.fw.png");
+                break;
+            case STRING_LITERAL:
+            case NUM_LITERAL:
+            case CHAR_LITERAL:
+                image = TokenImageCache.baseImage("images/ui/tokens/lucentGreen.fw.png");
+                break;                    
+            case SEPARATOR:
+                image = TokenImageCache.baseImage("images/ui/tokens/lucentYellow.fw.png");
+                break;
+            case OPERATOR:
+                image = TokenImageCache.baseImage("images/ui/tokens/lucentPurple.fw.png");
+                break;
+                
+            default:
+                System.out.println("Unsupported token: " + kind);
         }
 
-        graphics = image.getGraphics();
-        
-        FontMetrics fm = graphics.getFontMetrics(tokenFont);
+        int textWidth = TokenRenderer.textWidth(token.image());
 
-        if (fm.stringWidth(token.image()) < 25)
-            finalImage = finalizeImage(image, token, TOKEN_HEIGHT, MIN_WIDTH, Image.SCALE_DEFAULT);
+        if (textWidth < 25)
+            return TokenRenderer.render(image, token, MIN_WIDTH);
         else
-            finalImage = finalizeImage(image, token, TOKEN_HEIGHT, fm.stringWidth(token.image()), Image.SCALE_DEFAULT);
-        
-        WritableImage writableImage = SwingFXUtils.toFXImage(finalImage, null);
-        
-        return new RHSIconizedToken(writableImage, token, newIndex);
+            return TokenRenderer.render(image, token, textWidth);
     }
 
 	
-	/**
-	 * Resizes an image and adds the string text.
-	 * @param originalImage
-	 * @param height
-	 * @param width
-	 * @param type
-	 * @return an image to put on the GameBoard
-	 */
-    private static BufferedImage finalizeImage(Image originalImage,
-                                               SourceToken token,
-                                               int height,
-                                               int width,
-                                               int type)
-    {
-	
-    	String tokenImage = token.image();
-    	SourceTokenKind kind = token.kind();
-
-		BufferedImage resizedImage = new BufferedImage(width, height, type);
-		Graphics2D g = resizedImage.createGraphics();
-	    FontMetrics fm = g.getFontMetrics(tokenFont);
-	    
-	    int strWidth = (fm.stringWidth(tokenImage));
-	    int imageWidth = resizedImage.getWidth();
-	    
-	    int textBegin = (imageWidth - strWidth) / 2;
-	    int textHeight = (fm.getAscent() + (TOKEN_HEIGHT - (fm.getAscent() + fm.getDescent())) / 2);
-	    
-		g.drawImage(originalImage, 0, 0, width, height, null);
-		g.setColor(LHSTokenIconizer.tokenFontColors.get(kind));
-	    g.setFont(tokenFont);
-	    g.drawString(tokenImage, textBegin, textHeight);
-		g.dispose();
-	 
-		return resizedImage;
-		
-    }
-    
     public static void resetIndex()
     {
         index = 0;
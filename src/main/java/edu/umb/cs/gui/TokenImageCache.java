@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.gui;
+
+import edu.umb.cs.source.SourceToken;
+import edu.umb.cs.source.SourceTokenKind;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Shared by the iconizers, so that nothing is decoded or drawn twice:
+ * the base (PNG) images are decoded once, and the finished image of a
+ * token is kept by (style, kind, text). All the <code>;</code>,
+ * <code>(</code> or <code>public</code> of a board share one image.
+ * 
+ * An FX Image can be shown by any number of ImageViews, as long as 
+ * nobody writes to it.
+ */
+public final class TokenImageCache
+{
+    /**
+     * Where a token image is shown
+     */
+    public enum Style
+    {
+        BOARD,          // LHS, as dealt
+        BOARD_PLACED,   // LHS, dropped by the user
+        BAY,            // RHS, as dealt
+        BAY_PLACED      // RHS, put back by the user
+    }
+
+    /**
+     * maximum number of token images kept
+     */
+    static final int CAPACITY = 4096;
+
+    private static final Map<String, Image> baseImages = new HashMap<>();
+
+    private static final Map<Key, WritableImage> images
+            = new LinkedHashMap<Key, WritableImage>(256, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, WritableImage> eldest)
+                {
+                    return size() > CAPACITY;
+                }
+            };
+
+    private static long hits;
+    private static long misses;
+
+    private TokenImageCache() {}
+
+    /**
+     * @param resource path of a PNG in the class path
+     * @return the decoded image (shared: do not draw on it)
+     */
+    public static synchronized Image baseImage(String resource)
+    {
+        Image image = baseImages.get(resource);
+        if (image == null)
+        {
+            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource))
+            {
+                image = new Image(in);
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+            baseImages.put(resource, image);
+        }
+        return image;
+    }
+
+    /**
+     * @param style
+     * @param token
+     * @return the image of the token in the given style, or null if it has not been drawn yet
+     */
+    public static synchronized WritableImage get(Style style, SourceToken token)
+    {
+        WritableImage image = images.get(new Key(style, token));
+        if (image == null)
+            ++misses;
+        else
+            ++hits;
+        return image;
+    }
+
+    /**
+     * Unlike get, this is not counted as a hit or a miss
+     * 
+     * @param style
+     * @param token
+     * @return true if the image of the token in the given style has been drawn
+     */
+    public static synchronized boolean contains(Style style, SourceToken token)
+    {
+        return images.containsKey(new Key(style, token));
+    }
+
+    /**
+     * @param style
+     * @param token
+     * @param image the image just drawn for the token
+     * @return the image
+     */
+    public static synchronized WritableImage put(Style style, SourceToken token, WritableImage image)
+    {
+        images.put(new Key(style, token), image);
+        return image;
+    }
+
+    public static synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public static synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return fraction of the lookups that found an image (0 if none yet)
+     */
+    public static synchronized double getHitRate()
+    {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public static synchronized int size()
+    {
+        return images.size();
+    }
+
+    private static final class Key
+    {
+        private final Style style;
+        private final SourceTokenKind kind;
+        private final String text;
+
+        Key(Style style, SourceToken token)
+        {
+            this.style = style;
+            this.kind = token.kind();
+            this.text = token.image();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (style.hashCode() * 31 + kind.hashCode()) * 31 + text.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return style == other.style && kind == other.kind && text.equals(other.text);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.gui;
+
+import edu.umb.cs.source.SourceToken;
+import edu.umb.cs.source.SourceTokenKind;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import static edu.umb.cs.source.SourceTokenKind.*;
+
+/**
+ * Draws token images with JavaFX only: the base image is stretched onto
+ * a Canvas, the text is drawn over it, and the Canvas is snapshot into
+ * an image. No AWT image (nor a copy of its pixels) is involved.
+ * 
+ * Like any scene graph work, this must be called on the FX thread.
+ * The images are meant to be kept in the TokenImageCache.
+ */
+final class TokenRenderer
+{
+    static final int TOKEN_HEIGHT = 20;    //token height is always the same
+    static final int MIN_WIDTH = 32;       //the minimum token width
+
+    static final Font TOKEN_FONT = Font.font("Courier New", FontWeight.BOLD, 12);
+
+    static final Map<SourceTokenKind, Color> tokenFontColors = computeColorsMap();
+
+    // measures the text; reused, since it is only touched on the FX thread
+    private static final Text measure = new Text();
+
+    private static final SnapshotParameters transparent = new SnapshotParameters();
+    static
+    {
+        measure.setFont(TOKEN_FONT);
+        transparent.setFill(Color.TRANSPARENT);
+    }
+
+    private TokenRenderer() {}
+
+    private static Map<SourceTokenKind, Color> computeColorsMap()
+    {
+        EnumMap<SourceTokenKind, Color> ret = new EnumMap<>(SourceTokenKind.class);
+
+        Color orange = Color.rgb(206, 123, 0);
+        ret.put(KEYWORD, Color.BLUE);
+        ret.put(NUM_LITERAL, Color.BLACK);
+        ret.put(CHAR_LITERAL, orange);
+        ret.put(IDENTIFIER, Color.BLACK);
+        ret.put(STRING_LITERAL, orange);
+        ret.put(SEPARATOR, Color.BLACK);
+        ret.put(OPERATOR, Color.BLACK);
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @param text
+     * @return width (in pixels) of the text in the token font
+     */
+    static int textWidth(String text)
+    {
+        measure.setText(text);
+        return (int) Math.ceil(measure.getLayoutBounds().getWidth());
+    }
+
+    /**
+     * @param base the image to stretch under the text
+     * @param token
+     * @param width width of the result
+     * @return an image of the token (without its text if it is EMPTY)
+     */
+    static WritableImage render(Image base, SourceToken token, int width)
+    {
+        Canvas canvas = new Canvas(width, TOKEN_HEIGHT);
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        if (base != null)
+            g.drawImage(base, 0, 0, width, TOKEN_HEIGHT);
+        if (token.kind() != SourceTokenKind.EMPTY)
+        {
+            Color color = tokenFontColors.get(token.kind());
+            g.setFill(color == null ? Color.BLACK : color);
+            g.setFont(TOKEN_FONT);
+            g.setTextAlign(TextAlignment.CENTER);
+            g.setTextBaseline(VPos.CENTER);
+            g.fillText(token.image(), width / 2.0, TOKEN_HEIGHT / 2.0);
+        }
+        return canvas.snapshot(transparent, null);
+    }
+}
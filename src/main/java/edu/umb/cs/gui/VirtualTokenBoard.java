@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.gui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.Bounds;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+
+/**
+ * A token board for long sources: only the lines in the viewport
+ * (and a few around it) are in the scene. Like the cells of a ListView,
+ * the line cells are recycled while scrolling.
+ * 
+ * Every line has the same height, so the lines in view are found from
+ * the scroll position alone, without laying anything out.
+ * 
+ * The ImageViews of the tokens are kept for the whole game, since they 
+ * carry the drag and drop handlers (and state) of the EMPTY slots: 
+ * a recycled cell only changes which views it holds.
+ */
+final class VirtualTokenBoard {
+
+	/**lines kept in the scene above and below the viewport**/
+	static final int OVERSCAN = 2;
+	
+	/**room left for the line numbers when computing the width of a line**/
+	static final int LINE_NUMBER_WIDTH = 40;
+	
+	private final ScrollPane scrollPane;
+	private final int rowHeight;
+	private final Pane content = new Pane();
+	
+	private final List<ImageView[]> lines = new ArrayList<>();
+	private final Map<Integer, LineCell> shown = new HashMap<>();
+	private final ArrayDeque<LineCell> free = new ArrayDeque<>();
+	private double maxLineWidth;
+	
+	VirtualTokenBoard(ScrollPane scrollPane, int rowHeight){
+		this.scrollPane = scrollPane;
+		this.rowHeight = rowHeight;
+		
+		InvalidationListener refresher = new InvalidationListener() {
+			@Override
+			public void invalidated(Observable observable) {
+				refresh();
+			}
+		};
+		scrollPane.vvalueProperty().addListener(refresher);
+		scrollPane.viewportBoundsProperty().addListener(refresher);
+	}
+	
+	/**
+	 * @return the node to put in the ScrollPane
+	 */
+	Pane getContent(){
+		return content;
+	}
+	
+	/**
+	 * Append a line to the board (call layoutLines once all are added)
+	 * @param views the views of the tokens of the line
+	 */
+	void addLine(List<ImageView> views){
+		ImageView line[] = views.toArray(new ImageView[views.size()]);
+		double width = LINE_NUMBER_WIDTH;
+		for (ImageView view : line)
+			width += view.getImage().getWidth();
+		
+		maxLineWidth = Math.max(maxLineWidth, width);
+		lines.add(line);
+	}
+	
+	/**
+	 * Size the board for all its lines and show the ones in view
+	 */
+	void layoutLines(){
+		content.setPrefHeight(lines.size() * rowHeight);
+		content.setPrefWidth(maxLineWidth + 2 * GameBoard.TOKENBOARD_OFFSET);
+		refresh();
+	}
+	
+	/**
+	 * Remove all the lines
+	 */
+	void clear(){
+		for (LineCell cell : shown.values())
+			cell.release();
+		shown.clear();
+		free.clear();
+		lines.clear();
+		content.getChildren().clear();
+		maxLineWidth = 0;
+	}
+	
+	int getLineCount(){
+		return lines.size();
+	}
+	
+	/**
+	 * @return number of line cells in the scene (shown or not)
+	 */
+	int getCellCount(){
+		return content.getChildren().size();
+	}
+	
+	private void refresh(){
+		if (lines.isEmpty())
+			return;
+
+		Bounds viewport = scrollPane.getViewportBounds();
+		double height = viewport.getHeight() > 0 ? viewport.getHeight() : scrollPane.getMaxHeight();
+		double hidden = Math.max(0, content.getPrefHeight() - height);
+		double range = scrollPane.getVmax() - scrollPane.getVmin();
+		double top = range <= 0 ? 0 : (scrollPane.getVvalue() - scrollPane.getVmin()) / range * hidden;
+		
+		int first = Math.max(0, (int) (top / rowHeight) - OVERSCAN);
+		int last = Math.min(lines.size() - 1, (int) ((top + height) / rowHeight) + OVERSCAN);
+		
+		for (Iterator<Map.Entry<Integer, LineCell>> it = shown.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Integer, LineCell> entry = it.next();
+			if (entry.getKey() < first || entry.getKey() > last) {
+				entry.getValue().release();
+				free.push(entry.getValue());
+				it.remove();
+			}
+		}
+		
+		for (int lineIndex = first; lineIndex <= last; ++lineIndex) {
+			if (shown.containsKey(lineIndex))
+				continue;
+			
+			LineCell cell = free.poll();
+			if (cell == null) {
+				cell = new LineCell();
+				content.getChildren().add(cell);
+			}
+			cell.show(lineIndex, lines.get(lineIndex));
+			shown.put(lineIndex, cell);
+		}
+	}
+	
+	/**
+	 * A line of the board: its number, then the views of its tokens
+	 */
+	private final class LineCell extends HBox {
+		
+		private final Label number = new Label();
+		
+		LineCell(){
+			setMinHeight(rowHeight);
+			setPrefHeight(rowHeight);
+			setLayoutX(GameBoard.TOKENBOARD_OFFSET);
+			number.setStyle("-fx-fill:black; -fx-padding: 0, 0, 0, 0;");
+			getChildren().add(number);
+		}
+		
+		void show(int lineIndex, ImageView views[]){
+			number.setText(GameBoard.lineNumberText(lineIndex));
+			getChildren().addAll(views);
+			setLayoutY(lineIndex * rowHeight);
+			setVisible(true);
+		}
+		
+		void release(){
+			getChildren().remove(1, getChildren().size());
+			setVisible(false);
+		}
+	}
+}
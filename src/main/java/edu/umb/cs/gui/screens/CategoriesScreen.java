@@ -22,7 +22,7 @@
 package edu.umb.cs.gui.screens;
 
 import edu.umb.cs.api.APIs;
-import edu.umb.cs.entity.Category;
+import edu.umb.cs.api.CategorySummary;
 import edu.umb.cs.gui.GUI;
 import edu.umb.cs.gui.GUI.GameState;
 import java.util.LinkedList;
@@ -70,7 +70,7 @@ public class CategoriesScreen extends SecondaryScreen{
 		rightPane.setPadding(new Insets(5, 5, 5, 5));
 		rightPane.setMaxWidth(rightPane.getWidth());
 		//store the currently selected categories to be processed 'on start' pressed
-		final List<Category> selectedCategories = new LinkedList<>();
+		final List<CategorySummary> selectedCategories = new LinkedList<>();
 		
 		startBtn = CategoriesScreenController.getStartBtn();
 		startBtn.setDisable(true);
@@ -104,9 +104,9 @@ public class CategoriesScreen extends SecondaryScreen{
 		categoryNames = leftPane.getChildren();
 		
 
-		for(final Category category: GUI.getInstance().getAvailableCategories()){
+		for(final CategorySummary category: GUI.getInstance().getAvailableCategories()){
 			final CheckBox checkbox = new CheckBox(category.getName());
-			final Label label = new Label("This category has " + category.puzzlesCount() + " puzzle(s)");
+			final Label label = new Label("This category has " + category.getPuzzleCount() + " puzzle(s)");
 			categoryNames.add(checkbox);
 			
 			checkbox.setLayoutX(10);
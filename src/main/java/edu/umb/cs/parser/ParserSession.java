@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.parser;
+
+import edu.umb.cs.source.SourceFile;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * Parses sources with one JavaParser per thread (along with its token
+ * manager and char stream, whose buffers are kept), re-initialized for
+ * each source rather than created anew.
+ * 
+ * The content is read into memory and decoded up front, so the parser 
+ * reads from a char[] and no stream is left open.
+ */
+public final class ParserSession
+{
+    /**
+     * number of columns a tab counts for in the positions of the tokens
+     * (JavaCC's default)
+     */
+    public static final int DEFAULT_TAB_SIZE = 8;
+
+    private static final ThreadLocal<ParserSession> sessions = new ThreadLocal<ParserSession>()
+    {
+        @Override
+        protected ParserSession initialValue()
+        {
+            return new ParserSession();
+        }
+    };
+
+    private final SimpleCharStream stream = new SimpleCharStream(new StringReader(""));
+    private final JavaParserTokenManager tokenManager = new JavaParserTokenManager(stream);
+    private final JavaParser parser = new JavaParser(tokenManager);
+
+    private ParserSession() {}
+
+    /**
+     * @return the session of the current thread
+     */
+    public static ParserSession get()
+    {
+        return sessions.get();
+    }
+
+    /**
+     * @param file
+     * @param style
+     * @return the parsed source
+     * @throws IOException
+     * @throws ParseException 
+     */
+    public SourceFile parse(File file, BracingStyle style) throws IOException, ParseException
+    {
+        return parse(Files.readAllBytes(file.toPath()), style);
+    }
+
+    /**
+     * @param content content of a source file, in the platform's encoding
+     * @param style
+     * @return the parsed source
+     * @throws ParseException 
+     */
+    public SourceFile parse(byte content[], BracingStyle style) throws ParseException
+    {
+        CharBuffer chars = Charset.defaultCharset().decode(ByteBuffer.wrap(content));
+        return parse(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining(), style);
+    }
+
+    /**
+     * @param content
+     * @param offset
+     * @param length
+     * @param style
+     * @return the parsed source
+     * @throws ParseException 
+     */
+    public SourceFile parse(char content[], int offset, int length, BracingStyle style)
+                    throws ParseException
+    {
+        return parse(new CharArrayReader(content, offset, length), DEFAULT_TAB_SIZE, style);
+    }
+
+    /**
+     * @param content
+     * @param tabSize number of columns a tab counts for 
+     *                (in the positions reported by a ParseException)
+     * @param style
+     * @return the parsed source
+     * @throws ParseException 
+     */
+    public SourceFile parse(String content, int tabSize, BracingStyle style) throws ParseException
+    {
+        return parse(new StringReader(content), tabSize, style);
+    }
+
+    private SourceFile parse(Reader in, int tabSize, BracingStyle style) throws ParseException
+    {
+        stream.ReInit(in);
+        stream.setTabSize(tabSize);
+        tokenManager.ReInit(stream);
+        parser.ReInit(tokenManager);
+        return parser.parseJava(style);
+    }
+}
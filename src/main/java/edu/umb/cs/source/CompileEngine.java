@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source;
+
+/**
+ * Compiles a Java source and runs its <code>main</code> method.
+ * 
+ * @see CompileEngineKind
+ */
+public interface CompileEngine
+{
+    /**
+     * Compile <pre>src</pre>, execute the class <pre>outer</pre> and 
+     * return what it printed.
+     * 
+     * If the source cannot be compiled, or the program fails (or takes 
+     * too long), the returned <code>Output</code> is an error whose 
+     * content is the relevant message(s).
+     * 
+     * @param src the whole content of the source file
+     * @param outer name of the outer most class (ie., the one with main)
+     * @return the output of the program
+     */
+    Output compile(String src, String outer);
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source;
+
+import edu.umb.cs.source.std.InMemoryCompileEngine;
+import edu.umb.cs.source.std.SubprocessCompileEngine;
+
+/**
+ * Each member represents a different way of compiling and running a source
+ */
+public enum CompileEngineKind
+{
+    SUBPROCESS
+    {
+        @Override
+        public CompileEngine getEngine()
+        {
+            return SubprocessCompileEngine.INSTANCE;
+        }
+
+        @Override
+        public boolean isAvailable()
+        {
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Writes the source to a temp directory then runs the"
+                    + " `javac` and `java` commands on it";
+        }
+    },
+
+    IN_PROCESS
+    {
+        @Override
+        public CompileEngine getEngine()
+        {
+            return InMemoryCompileEngine.INSTANCE;
+        }
+
+        @Override
+        public boolean isAvailable()
+        {
+            return InMemoryCompileEngine.isAvailable();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Compiles the source in memory with the JDK's compiler and"
+                    + " runs it in its own class loader, inside this JVM";
+        }
+    }
+    ;
+
+    public abstract CompileEngine getEngine();
+
+    /**
+     * @return true if the engine can be used in the current runtime
+     */
+    public abstract boolean isAvailable();
+
+    public abstract String toString();
+}
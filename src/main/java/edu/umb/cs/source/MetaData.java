@@ -22,10 +22,10 @@ package edu.umb.cs.source;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -63,6 +63,10 @@ public class MetaData
         {
             return null;
         }
+        finally
+        {
+            input.close();
+        }
 
         // remove the hash symbols
         catName = catName.substring(1).trim().toUpperCase();
@@ -75,6 +79,56 @@ public class MetaData
         return new MetaData(path, hintsList, exp, catName);
     }
 
+    /**
+     * Parse the meta data of many files at once, on as many threads 
+     * as there are processors.
+     * 
+     * @param files
+     * @return the meta data of the files that have some, in the same order
+     *         (files that cannot be read or have no meta data are left out)
+     */
+    public static List<MetaData> parseAll(Collection<File> files)
+    {
+        List<MetaData> ret = new ArrayList<>();
+        if (files.isEmpty())
+            return ret;
+
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<MetaData>> pending = new ArrayList<>();
+        for (final File f : files)
+            pending.add(executor.submit(new Callable<MetaData>()
+            {
+                @Override
+                public MetaData call() throws FileNotFoundException
+                {
+                    return parseMetaData(f.getAbsolutePath());
+                }
+            }));
+        executor.shutdown();
+
+        for (Future<MetaData> f : pending)
+        {
+            try
+            {
+                MetaData meta = f.get();
+                if (meta != null)
+                    ret.add(meta);
+            }
+            catch (ExecutionException ex)
+            {
+                Logger.getLogger(MetaData.class.getName()).log(Level.WARNING, null, ex.getCause());
+            }
+            catch (InterruptedException ex)
+            {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return ret;
+    }
+
     private static boolean isMeta(String line)
     {
         return !line.isEmpty() && line.charAt(0) == META_MARKER;
@@ -28,11 +28,25 @@ public class Output
 {
     private final String output;
     private final boolean isError;
+    private final boolean conclusive;
     
     public Output(String output, boolean isError)
+    {
+        this(output, isError, true);
+    }
+
+    /**
+     * @param output
+     * @param isError
+     * @param conclusive false if the output says nothing about the program
+     *                   itself (eg., it was interrupted or took too long),
+     *                   so running it again may give a different output
+     */
+    public Output(String output, boolean isError, boolean conclusive)
     {
         this.output = output;
         this.isError = isError;
+        this.conclusive = conclusive;
     }
     
     public String getOuput()
@@ -44,4 +58,9 @@ public class Output
     {
         return isError;
     }
+
+    public boolean isConclusive()
+    {
+        return conclusive;
+    }
 }
@@ -34,6 +34,12 @@ public interface ShuffledSource
     SourceFile getShuffledSource();
 
     List<SourceToken> getRemovedTokens();
+
+    /**
+     * @return where each of the removed tokens was
+     *         (ie., the i-th removed token belongs at the i-th position)
+     */
+    List<Position> getRemovedPositions();
     
     public int totalRemovable();
     
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source;
+
+import com.google.common.io.ByteStreams;
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.std.Utils;
+import java.io.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the sources that have been parsed, so that playing a puzzle again
+ * (or refreshing it, or switching back to a bracing style) does not run
+ * the parser.
+ * 
+ * Entries are keyed by a hash of the file's content plus the bracing style.
+ * A file is only read and hashed again when its modification time or its
+ * length has changed; a file changed on disk thus gets a new entry.
+ * 
+ * The sources handed out are shared: they must not be modified
+ * (the shufflers copy the lines they take tokens out of).
+ * 
+ * The least recently used entries are dropped once the capacity is reached.
+ */
+public class SourceFileCache
+{
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * What a file was like when it was last hashed
+     */
+    private static class Stamp
+    {
+        final long lastModified;
+        final long length;
+        final String hash;
+
+        Stamp(File file, String hash)
+        {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.hash = hash;
+        }
+
+        boolean matches(File file)
+        {
+            return lastModified == file.lastModified() && length == file.length();
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<String, SourceFile> entries;
+    private final Map<String, Stamp> stamps = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SourceFileCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SourceFileCache(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        entries = new LinkedHashMap<String, SourceFile>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SourceFile> eldest)
+            {
+                return size() > SourceFileCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param file
+     * @param languageType
+     * @param style
+     * @return the parsed source (shared: do not modify it)
+     * @throws FileNotFoundException if the file cannot be read
+     * @throws ParseException 
+     */
+    public SourceFile get(File file, Language languageType, BracingStyle style)
+                    throws FileNotFoundException, ParseException
+    {
+        String path = file.getAbsolutePath();
+        byte content[] = null;
+        Stamp stamp;
+        synchronized (entries)
+        {
+            stamp = stamps.get(path);
+        }
+        if (stamp == null || !stamp.matches(file))
+        {
+            content = read(file);
+            stamp = new Stamp(file, Utils.hash(content));
+            synchronized (entries)
+            {
+                stamps.put(path, stamp);
+            }
+        }
+
+        String key = stamp.hash + ':' + languageType + ':' + style;
+        SourceFile ret;
+        synchronized (entries)
+        {
+            ret = entries.get(key);
+        }
+        if (ret != null)
+        {
+            hits.incrementAndGet();
+            return ret;
+        }
+
+        misses.incrementAndGet();
+        if (content == null)
+            content = read(file);
+        ret = SourceFiles.parse(content, languageType, style);
+        synchronized (entries)
+        {
+            entries.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Forget everything (eg., after the puzzles have been re-imported)
+     */
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            stamps.clear();
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    private static byte[] read(File file) throws FileNotFoundException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            return ByteStreams.toByteArray(in);
+        }
+        catch (FileNotFoundException ex)
+        {
+            throw ex;
+        }
+        catch (IOException ex)
+        {
+            FileNotFoundException notRead = new FileNotFoundException("Cannot read " + file);
+            notRead.initCause(ex);
+            throw notRead;
+        }
+    }
+}
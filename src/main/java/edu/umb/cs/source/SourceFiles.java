@@ -23,10 +23,10 @@ package edu.umb.cs.source;
 
 import edu.umb.cs.parser.BracingStyle;
 import edu.umb.cs.parser.InternalException;
-import edu.umb.cs.parser.JavaParser;
 import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.parser.ParserSession;
+import edu.umb.cs.source.std.CompactSourceFile;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 
 /**
@@ -35,17 +35,65 @@ import java.io.FileNotFoundException;
  */
 public class SourceFiles 
 {
+    /**
+     * Keep the parsed sources in flat arrays (See CompactSourceFile)
+     */
+    private static final boolean COMPACT = Boolean.getBoolean("tokanagrammar.compactSources");
+
+    /**
+     * Parsed sources, shared by all the callers of getSourceFile
+     * (<code>tokanagrammar.sourceCacheSize</code> entries at most)
+     */
+    private static final SourceFileCache cache
+            = new SourceFileCache(Integer.getInteger("tokanagrammar.sourceCacheSize",
+                                                     SourceFileCache.DEFAULT_CAPACITY));
+
+    /**
+     * The file is only parsed if it has not been parsed with the same
+     * style before, or has changed since (See SourceFileCache)
+     * 
+     * @param file
+     * @param languageType
+     * @param style
+     * @return the parsed source (shared: do not modify it)
+     * @throws FileNotFoundException
+     * @throws ParseException 
+     */
     public static SourceFile getSourceFile(File file,
                                            Language languageType,
                                            BracingStyle style)
                              throws FileNotFoundException, ParseException
+    {
+        return cache.get(file, languageType, style);
+    }
+
+    /**
+     * @return the cache used by getSourceFile
+     */
+    public static SourceFileCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Parse the given content (not cached)
+     * 
+     * @param content content of a source file
+     * @param languageType
+     * @param style
+     * @return the parsed source
+     * @throws ParseException 
+     */
+    public static SourceFile parse(byte content[],
+                                   Language languageType,
+                                   BracingStyle style)
+                             throws ParseException
     {
         switch(languageType)
         {
             case JAVA:
-                FileInputStream fin = new FileInputStream(file);
-                JavaParser parser = new JavaParser(new FileInputStream(file));
-                return parser.parseJava(style);
+                SourceFile src = ParserSession.get().parse(content, style);
+                return COMPACT ? CompactSourceFile.of(src) : src;
             default:
                 throw new InternalException("Unsupported Language: " + languageType);
         }
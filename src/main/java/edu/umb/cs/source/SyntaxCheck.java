@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.source;
+
+/**
+ * Result of checking the syntax of a (possibly partial) arrangement
+ * of tokens, without compiling it.
+ */
+public class SyntaxCheck
+{
+    public enum Status
+    {
+        /**
+         * the tokens form a syntactically valid program
+         */
+        VALID,
+
+        /**
+         * there is a syntax error before the first empty slot,
+         * so no way of filling the slots can make this compile
+         */
+        INVALID,
+
+        /**
+         * no error before the first empty slot
+         */
+        INCOMPLETE
+    };
+
+    private final Status status;
+    private final int tokenIndex;
+    private final String message;
+
+    public SyntaxCheck(Status status, int tokenIndex, String message)
+    {
+        this.status = status;
+        this.tokenIndex = tokenIndex;
+        this.message = message;
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return index (in the checked list) of the token where the error starts 
+     *         if INVALID, of the first empty slot if INCOMPLETE, -1 otherwise
+     */
+    public int getTokenIndex()
+    {
+        return tokenIndex;
+    }
+
+    /**
+     * @return the parser's message, if INVALID
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return status + (tokenIndex < 0 ? "" : " at token " + tokenIndex)
+                + (message == null ? "" : ": " + message);
+    }
+}
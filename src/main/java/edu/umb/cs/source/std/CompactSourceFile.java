@@ -0,0 +1,449 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.source.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source stored in flat arrays rather than a list of lists of tokens:
+ * <ul>
+ * <li> ids: the tokens, one after another, as indexes in a table of 
+ *      distinct tokens (one entry per kind and image) </li>
+ * <li> kinds: the kind of each token (its ordinal) </li>
+ * <li> lineStarts: index in ids of the first token of each line
+ *      (plus the number of tokens, at the end) </li>
+ * </ul>
+ * 
+ * A token is thus found by its line and position, or by its index in the
+ * whole source. Walking the tokens (or the non-whitespace ones, with a
+ * Cursor) allocates nothing; the lists of the SourceFile interface are
+ * read-only views over the arrays.
+ */
+public class CompactSourceFile implements SourceFile
+{
+    private static final SourceTokenKind KINDS[] = SourceTokenKind.values();
+
+    private final String path;
+    private final SourceToken table[];
+    private final int ids[];
+    private final byte kinds[];
+    private final int lineStarts[];
+    private final int tokenCount;
+    private final BracingStyle style;
+    private final String outerMost;
+
+    // only a conclusive output is kept (a time out may not happen again);
+    // the source may be shared by threads (See SourceFileCache)
+    private volatile Output output = null;
+    private volatile int nonWhitespaces[];
+    private volatile int nonWhitespaceLines[];
+    private volatile Map<SourceToken, Integer> stats;
+
+    private CompactSourceFile(String path, SourceToken table[], int ids[], byte kinds[],
+                              int lineStarts[], int tokenCount, BracingStyle style, String outer)
+    {
+        this.path = path;
+        this.table = table;
+        this.ids = ids;
+        this.kinds = kinds;
+        this.lineStarts = lineStarts;
+        this.tokenCount = tokenCount;
+        this.style = style;
+        this.outerMost = outer;
+    }
+
+    /**
+     * @param src
+     * @return the same source, stored in flat arrays
+     */
+    public static CompactSourceFile of(SourceFile src)
+    {
+        if (src instanceof CompactSourceFile)
+            return (CompactSourceFile) src;
+
+        int lineCount = src.lineCount();
+        int lineStarts[] = new int[lineCount + 1];
+        for (int line = 0; line < lineCount; ++line)
+            lineStarts[line + 1] = lineStarts[line] + src.tokenCount(line);
+
+        int size = lineStarts[lineCount];
+        int ids[] = new int[size];
+        byte kinds[] = new byte[size];
+        List<SourceToken> table = new ArrayList<>();
+        Map<String, Integer> known = new HashMap<>();
+        int n = 0;
+        for (int line = 0; line < lineCount; ++line)
+        {
+            for (SourceToken tk : src.getTokens(line))
+            {
+                // tokens with the same image may differ in kind (eg., '.')
+                String key = tk.kind().ordinal() + tk.image();
+                Integer id = known.get(key);
+                if (id == null)
+                {
+                    id = table.size();
+                    known.put(key, id);
+                    table.add(tk);
+                }
+                ids[n] = id;
+                kinds[n] = (byte) tk.kind().ordinal();
+                ++n;
+            }
+        }
+
+        return new CompactSourceFile("COMPACT",
+                                     table.toArray(new SourceToken[table.size()]),
+                                     ids, kinds, lineStarts,
+                                     src.tokenCount(), src.getStyle(), src.getClassName());
+    }
+
+    /**
+     * Walks the non-whitespace tokens, from the last one to the first
+     * (the order of getNonWhitespaces), without allocating anything
+     */
+    public final class Cursor
+    {
+        private final int indexes[] = nonWhitespaceIndexes();
+        private int at = indexes.length;
+        private int index = -1;
+        private int line = lineStarts.length - 1;
+
+        private Cursor() {}
+
+        /**
+         * @return false if there are no more tokens
+         */
+        public boolean next()
+        {
+            if (at == 0)
+                return false;
+            index = indexes[--at];
+            while (lineStarts[line] > index)
+                --line;
+            return true;
+        }
+
+        /**
+         * @return index of the token in the whole source
+         */
+        public int index()
+        {
+            return index;
+        }
+
+        public int line()
+        {
+            return line;
+        }
+
+        public int pos()
+        {
+            return index - lineStarts[line];
+        }
+
+        public SourceToken token()
+        {
+            return table[ids[index]];
+        }
+    }
+
+    /**
+     * @return a new cursor, before the first non-whitespace token
+     */
+    public Cursor nonWhitespaceCursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * @return indexes (in the whole source) of the non-whitespace tokens,
+     *         in increasing order (shared: do not modify it)
+     */
+    public int[] nonWhitespaceIndexes()
+    {
+        int ret[] = nonWhitespaces;
+        if (ret == null)
+        {
+            int count = 0;
+            for (byte k : kinds)
+                if (!isWhitespace(k))
+                    ++count;
+            ret = new int[count];
+            count = 0;
+            for (int n = 0; n < kinds.length; ++n)
+                if (!isWhitespace(kinds[n]))
+                    ret[count++] = n;
+            nonWhitespaces = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @return line of each of the non-whitespace tokens, in the order of
+     *         nonWhitespaceIndexes() (shared: do not modify it)
+     */
+    public int[] nonWhitespaceLines()
+    {
+        int ret[] = nonWhitespaceLines;
+        if (ret == null)
+        {
+            int indexes[] = nonWhitespaceIndexes();
+            ret = new int[indexes.length];
+            int line = 0;
+            for (int n = 0; n < indexes.length; ++n)
+            {
+                while (lineStarts[line + 1] <= indexes[n])
+                    ++line;
+                ret[n] = line;
+            }
+            nonWhitespaceLines = ret;
+        }
+        return ret;
+    }
+
+    private static boolean isWhitespace(byte kind)
+    {
+        return kind == SourceTokenKind.TAB.ordinal() || kind == SourceTokenKind.SPACE.ordinal();
+    }
+
+    /**
+     * @param index index of a token in the whole source
+     * @return the token
+     */
+    public SourceToken tokenAt(int index)
+    {
+        return table[ids[index]];
+    }
+
+    /**
+     * @param index index of a token in the whole source
+     * @return its kind
+     */
+    public SourceTokenKind kindAt(int index)
+    {
+        return KINDS[kinds[index]];
+    }
+
+    /**
+     * @param line
+     * @return index (in the whole source) of the first token of the line
+     */
+    public int lineStart(int line)
+    {
+        return lineStarts[line];
+    }
+
+    /**
+     * @param index index of a token in the whole source
+     * @return the line the token is on
+     */
+    public int lineOf(int index)
+    {
+        int line = Arrays.binarySearch(lineStarts, index);
+        if (line < 0)
+            return -line - 2;
+        // skip the empty lines starting at the same index
+        while (line + 1 < lineStarts.length - 1 && lineStarts[line + 1] == index)
+            ++line;
+        return line;
+    }
+
+    /**
+     * @return number of tokens stored, whitespaces included
+     *         (indexes in the whole source go from 0 to size() - 1)
+     */
+    public int size()
+    {
+        return ids.length;
+    }
+
+    /**
+     * @return number of distinct tokens
+     */
+    public int distinctTokenCount()
+    {
+        return table.length;
+    }
+
+    // Object interface
+    @Override
+    public String toString()
+    {
+        StringBuilder bd = new StringBuilder();
+        bd.append("PATH = " ).append(path).append('\n');
+        bd.append("SOURCE starts here: \n--------------\n");
+        for (int line = 0; line < lineCount(); ++line)
+        {
+            for (int n = lineStarts[line]; n < lineStarts[line + 1]; ++n)
+                bd.append(table[ids[n]].image());
+            bd.append('\n');
+        }
+        return bd.toString();
+    }
+
+    // SourceFile interface
+
+    @Override
+    public ArrayList<Position> getNonWhitespaces()
+    {
+        ArrayList<Position> ret = new ArrayList<>(nonWhitespaceIndexes().length);
+        Cursor c = nonWhitespaceCursor();
+        while (c.next())
+            ret.add(new Position(c.line(), c.pos()));
+        return ret;
+    }
+
+    @Override
+    public String getClassName()
+    {
+        return outerMost;
+    }
+
+    @Override
+    public BracingStyle getStyle()
+    {
+        return style;
+    }
+
+    @Override
+    public String getLine(int line)
+    {
+        return getTokens(line).toString();
+    }
+
+    @Override
+    public List<SourceToken> getTokens(final int line)
+    {
+        final int start = lineStarts[line];
+        final int size = lineStarts[line + 1] - start;
+        return new AbstractList<SourceToken>()
+        {
+            @Override
+            public SourceToken get(int pos)
+            {
+                if (pos < 0 || pos >= size)
+                    throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size);
+                return table[ids[start + pos]];
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+
+            // what copying the line (eg., new ArrayList<>(line)) calls
+            @Override
+            public Object[] toArray()
+            {
+                Object ret[] = new Object[size];
+                for (int n = 0; n < size; ++n)
+                    ret[n] = table[ids[start + n]];
+                return ret;
+            }
+        };
+    }
+
+    @Override
+    public SourceToken getToken(int line, int position)
+    {
+        return getTokens(line).get(position);
+    }
+
+    @Override
+    public int tokenCount(int line)
+    {
+        return lineStarts[line + 1] - lineStarts[line];
+    }
+
+    @Override
+    public int tokenCount()
+    {
+        return tokenCount;
+    }
+
+    @Override
+    public int lineCount()
+    {
+        return lineStarts.length - 1;
+    }
+
+    @Override
+    public Map<SourceToken, Integer> getStatistic()
+    {
+        Map<SourceToken, Integer> ret = stats;
+        if (ret == null)
+        {
+            int counts[] = new int[table.length];
+            for (int id : ids)
+                ++counts[id];
+            Map<SourceToken, Integer> map = new HashMap<>();
+            for (int id = 0; id < table.length; ++id)
+            {
+                // tokens are equal by image
+                Integer prev = map.get(table[id]);
+                map.put(table[id], prev == null ? counts[id] : prev + counts[id]);
+            }
+            stats = ret = Collections.unmodifiableMap(map);
+        }
+        return ret;
+    }
+
+    @Override
+    public Output compileAndExecute()
+    {
+        Output ret = output;
+        if (ret == null)
+        {
+            ret = Utils.compile(getAll(), outerMost);
+            if (ret.isConclusive())
+                output = ret;
+        }
+        return ret;
+    }
+
+    @Override
+    public List<List<SourceToken>> getAll()
+    {
+        return new AbstractList<List<SourceToken>>()
+        {
+            @Override
+            public List<SourceToken> get(int line)
+            {
+                return getTokens(line);
+            }
+
+            @Override
+            public int size()
+            {
+                return lineCount();
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.Output;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entry point of the worker JVMs started by <code>WorkerPool</code>.
+ * 
+ * A worker reads compiled programs from its stdin, runs them one at a time
+ * and writes the results to its stdout (See WorkerPool for the protocol).
+ * It exits when its stdin is closed, or right after a program that did not
+ * finish cleanly, since its threads may still be running.
+ * 
+ * A program calling System.exit() ends the worker too, in which case the
+ * output printed so far is still sent back. The worker then exits with the
+ * program's status, which the pool checks (a nonzero one is an error).
+ */
+public class ExecutionWorker
+{
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static DataOutputStream out;
+
+    // true while a program is running and its reply has not been sent
+    private static boolean pending;
+
+    public static void main(String args[]) throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+                                new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+        // stdout is reserved for the replies
+        System.setOut(System.err);
+
+        Runtime.getRuntime().addShutdownHook(new Thread("reply-on-exit")
+        {
+            @Override
+            public void run()
+            {
+                String text = InMemoryCompileEngine.runningOutput();
+                try
+                {
+                    reply(new Output(text == null ? "" : text, false), true);
+                }
+                catch (IOException ex)
+                {
+                    // the pool is gone
+                }
+            }
+        });
+
+        while (true)
+        {
+            String outer;
+            try
+            {
+                outer = in.readUTF();
+            }
+            catch (EOFException ex)
+            {
+                // the pool is done with this worker
+                return;
+            }
+            long timeout = in.readLong();
+            int outputCap = in.readInt();
+            int count = in.readInt();
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int n = 0; n < count; ++n)
+            {
+                String name = in.readUTF();
+                byte bytes[] = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+
+            synchronized (ExecutionWorker.class)
+            {
+                pending = true;
+            }
+            InMemoryCompileEngine.ProgramGroup group
+                    = new InMemoryCompileEngine.ProgramGroup("program-" + outer, outputCap);
+            Output result = InMemoryCompileEngine.run(classes, outer, group, timeout);
+            // threads had to be stopped, which may have left locks
+            // or shared state in a bad way
+            boolean dirty = group.getStopped() > 0 || group.activeCount() > 0;
+
+            reply(result, dirty);
+            if (dirty)
+                Runtime.getRuntime().halt(0);
+        }
+    }
+
+    /**
+     * Send the result of the current program, unless it has already been sent
+     */
+    private static synchronized void reply(Output result, boolean exiting) throws IOException
+    {
+        if (!pending)
+            return;
+        pending = false;
+
+        byte text[] = result.getOuput().getBytes(UTF8);
+        out.writeBoolean(result.isError());
+        out.writeBoolean(result.isConclusive());
+        out.writeInt(text.length);
+        out.write(text);
+        out.writeBoolean(exiting);
+        out.flush();
+    }
+}
@@ -0,0 +1,564 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.CompileEngine;
+import edu.umb.cs.source.Output;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.tools.*;
+
+/**
+ * Compiles the source with the JDK's compiler (<code>javax.tools</code>)
+ * and runs it inside this JVM.
+ * 
+ * Nothing is written to disk: the source and the class files are kept in
+ * memory, and the classes are loaded by their own class loader, which
+ * cannot see any of the game's classes.
+ * 
+ * Programs may run at the same time: each runs in its own ProgramGroup,
+ * which keeps what its threads print (See Dispatcher).
+ * 
+ * Note: the program shares this JVM. This is only as safe as the programs
+ * being run (ie., a call to System.exit() would end the game too).
+ */
+public class InMemoryCompileEngine implements CompileEngine
+{
+    public static final InMemoryCompileEngine INSTANCE = new InMemoryCompileEngine();
+
+    /**
+     * maximum time (in milliseconds) a program is allowed to run
+     */
+    static final long RUN_TIME_OUT = 5000;
+
+    /**
+     * maximum number of bytes of output kept from a program
+     */
+    static final int OUTPUT_CAP = 64 * 1024;
+
+    private static final List<String> OPTIONS = Arrays.asList("-proc:none", "-nowarn");
+
+    // the standard file manager is expensive to create (it indexes
+    // the platform classes), hence one is shared by all compilations
+    private StandardJavaFileManager stdManager;
+
+    private InMemoryCompileEngine() {}
+
+    /**
+     * @return true if this runtime comes with a Java compiler (ie., it is a JDK)
+     */
+    public static boolean isAvailable()
+    {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    @Override
+    public Output compile(String src, String outer)
+    {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null)
+            return new Output("No Java compiler is available in this runtime", true);
+
+        Map<String, byte[]> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success;
+        synchronized (this)
+        {
+            if (stdManager == null)
+                stdManager = javac.getStandardFileManager(null, null, null);
+
+            JavaFileManager fileManager = new MemoryFileManager(stdManager, classes);
+            JavaCompiler.CompilationTask task
+                    = javac.getTask(null,
+                                    fileManager,
+                                    diagnostics,
+                                    OPTIONS,
+                                    null,
+                                    Arrays.asList(new SourceObject(outer, Utils.stripPackage(src))));
+            success = task.call();
+        }
+
+        if (!success)
+            return new Output(formatDiagnostics(diagnostics.getDiagnostics()), true);
+
+        return run(classes, outer, new ProgramGroup("program-" + outer, OUTPUT_CAP), RUN_TIME_OUT);
+    }
+
+    /**
+     * Load the given classes in a fresh class loader and run the main method 
+     * of <pre>outer</pre> in the given thread group, which keeps what it prints.
+     * 
+     * Once main has returned or timed out, the threads still alive in the
+     * group are stopped (See ProgramGroup.stopAll).
+     * 
+     * @param classes class name to class file content
+     * @param outer name of the class whose main is run
+     * @param group the (new) group to run the program in
+     * @param timeout maximum running time in milliseconds
+     * @return the program's output
+     */
+    static Output run(Map<String, byte[]> classes,
+                      String outer,
+                      ProgramGroup group,
+                      long timeout)
+    {
+        final Method main;
+        try
+        {
+            Class<?> mainClass = new MemoryClassLoader(classes).loadClass(outer);
+            main = mainClass.getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers()))
+                return new Output("main method is not static in class " + outer, true);
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | LinkageError ex)
+        {
+            return new Output("Error: Could not find or load main class " + outer
+                                + " (" + ex + ")", true);
+        }
+
+        final Throwable failure[] = new Throwable[1];
+        Thread thread = new Thread(group, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    main.invoke(null, (Object)new String[0]);
+                }
+                catch (InvocationTargetException ex)
+                {
+                    failure[0] = trimTrace(ex.getCause());
+                }
+                catch (IllegalAccessException ex)
+                {
+                    failure[0] = ex;
+                }
+            }
+        }, "main");
+
+        installDispatchers();
+        boolean finished;
+        running.add(group);
+        try
+        {
+            thread.start();
+            thread.join(timeout);
+            finished = !thread.isAlive();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return new Output("Program was interrupted", true, false);
+        }
+        finally
+        {
+            group.stopAll();
+            running.remove(group);
+            group.release();
+        }
+
+        if (!finished)
+            return new Output("Program took too long (more than "
+                                + timeout / 1000 + " seconds)", true, false);
+        if (failure[0] != null)
+        {
+            StringWriter trace = new StringWriter();
+            PrintWriter pw = new PrintWriter(trace);
+            pw.print(group.err.toString());
+            pw.print("Exception in thread \"main\" ");
+            failure[0].printStackTrace(pw);
+            pw.flush();
+            return new Output(trace.toString(), true);
+        }
+        return new Output(group.out.toString(), false);
+    }
+
+    /**
+     * @return what (one of) the programs being run has printed so far,
+     *         or null if no program is running
+     */
+    static String runningOutput()
+    {
+        for (ProgramGroup group : running)
+            return group.out.toString();
+        return null;
+    }
+
+    /**
+     * Drop the frames of the reflective call to main, so the trace
+     * looks like one printed by the <code>java</code> command
+     */
+    private static Throwable trimTrace(Throwable ex)
+    {
+        StackTraceElement trace[] = ex.getStackTrace();
+        int n = 0;
+        while (n < trace.length && !isReflection(trace[n].getClassName()))
+            ++n;
+        ex.setStackTrace(Arrays.copyOf(trace, n));
+        return ex;
+    }
+
+    private static boolean isReflection(String className)
+    {
+        return className.startsWith("sun.reflect.")
+                || className.startsWith("jdk.internal.reflect.")
+                || className.startsWith("java.lang.reflect.");
+    }
+
+    private static String formatDiagnostics(List<Diagnostic<? extends JavaFileObject>> diagnostics)
+    {
+        StringBuilder bd = new StringBuilder();
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics)
+        {
+            if (d.getKind() != Diagnostic.Kind.ERROR)
+                continue;
+            ++errors;
+            if (d.getSource() != null)
+                bd.append(new File(d.getSource().getName()).getName())
+                  .append(':').append(d.getLineNumber()).append(": ");
+            bd.append("error: ").append(d.getMessage(null)).append('\n');
+        }
+        bd.append(errors).append(errors == 1 ? " error" : " errors").append('\n');
+        return bd.toString();
+    }
+
+    // ---- in-memory file objects ------
+
+    private static class SourceObject extends SimpleJavaFileObject
+    {
+        private final String content;
+
+        SourceObject(String outer, String content)
+        {
+            super(URI.create("string:///" + outer + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors)
+        {
+            return content;
+        }
+    }
+
+    private static class ClassObject extends SimpleJavaFileObject
+    {
+        private final String name;
+        private final Map<String, byte[]> classes;
+
+        ClassObject(String name, Map<String, byte[]> classes)
+        {
+            super(URI.create("mem:///" + name.replace('.', '/') + Kind.CLASS.extension),
+                  Kind.CLASS);
+            this.name = name;
+            this.classes = classes;
+        }
+
+        @Override
+        public OutputStream openOutputStream()
+        {
+            return new ByteArrayOutputStream()
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    super.close();
+                    classes.put(name, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+    {
+        private final Map<String, byte[]> classes;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classes)
+        {
+            super(fileManager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location,
+                                                   String className,
+                                                   JavaFileObject.Kind kind,
+                                                   FileObject sibling)
+        {
+            return new ClassObject(className, classes);
+        }
+
+        @Override
+        public void close()
+        {
+            // the standard file manager is shared
+        }
+    }
+
+    /**
+     * Defines the compiled classes. Its parent is the platform's loader
+     * so the program sees the JDK but none of the game's classes
+     */
+    static class MemoryClassLoader extends ClassLoader
+    {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes)
+        {
+            super(ClassLoader.getSystemClassLoader().getParent());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException
+        {
+            byte bytes[] = classes.get(name);
+            if (bytes == null)
+                throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // ---- output of the programs ------
+
+    private static final Set<ProgramGroup> running
+            = Collections.newSetFromMap(new ConcurrentHashMap<ProgramGroup, Boolean>());
+    private static boolean dispatching = false;
+
+    /**
+     * Replace System.out and System.err (once and for all) with streams that
+     * send what a program's threads write to its group, and anything else
+     * to the original streams
+     */
+    private static synchronized void installDispatchers()
+    {
+        if (dispatching)
+            return;
+        System.setOut(new PrintStream(new Dispatcher(System.out, false), true));
+        System.setErr(new PrintStream(new Dispatcher(System.err, true), true));
+        dispatching = true;
+    }
+
+    /**
+     * The thread group a program runs in, with what its threads
+     * (and those of its sub-groups) have printed, up to a cap
+     */
+    static class ProgramGroup extends ThreadGroup
+    {
+        /** how long (in milliseconds) a thread has to end once interrupted */
+        private static final long STOP_GRACE = 100;
+
+        final Capture out;
+        final Capture err;
+        private int stopped = 0;
+
+        /**
+         * @param name
+         * @param outputCap maximum number of bytes kept, of each stream
+         */
+        ProgramGroup(String name, int outputCap)
+        {
+            super(name);
+            // goes away with its last thread, should one outlive stopAll
+            setDaemon(true);
+            out = new Capture(outputCap);
+            err = new Capture(outputCap);
+        }
+
+        /**
+         * Detach this group from its parent, once its threads have been stopped
+         * (otherwise the parent would keep it, and its output, for good)
+         */
+        void release()
+        {
+            try
+            {
+                if (!isDestroyed())
+                    destroy();
+            }
+            catch (IllegalThreadStateException ex)
+            {
+                // some thread could not be stopped: being a daemon group,
+                // it is destroyed when that thread ends
+            }
+        }
+
+        /**
+         * Interrupt the threads still alive in this group, then stop those
+         * that do not end within a short grace period
+         * 
+         * @return number of threads that were alive
+         */
+        @SuppressWarnings("deprecation")
+        synchronized int stopAll()
+        {
+            int found = 0;
+            // a thread may start others while being stopped
+            for (int pass = 0; pass < 3; ++pass)
+            {
+                Thread threads[] = new Thread[activeCount() + 8];
+                int count = enumerate(threads, true);
+                if (count == 0)
+                    break;
+                found += count;
+                for (int n = 0; n < count; ++n)
+                    threads[n].interrupt();
+                long deadline = System.currentTimeMillis() + STOP_GRACE;
+                try
+                {
+                    for (int n = 0; n < count; ++n)
+                        threads[n].join(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                for (int n = 0; n < count; ++n)
+                {
+                    if (!threads[n].isAlive())
+                        continue;
+                    try
+                    {
+                        threads[n].stop();
+                    }
+                    catch (UnsupportedOperationException ex)
+                    {
+                        // nothing else can be done
+                    }
+                }
+            }
+            stopped += found;
+            return found;
+        }
+
+        /**
+         * @return number of threads stopped because they were still alive
+         *         once main was done
+         */
+        synchronized int getStopped()
+        {
+            return stopped;
+        }
+    }
+
+    /**
+     * Sends what is written to the capture of the program group the 
+     * writing thread belongs to, if any, and to the original stream otherwise
+     */
+    private static class Dispatcher extends OutputStream
+    {
+        private final PrintStream original;
+        private final boolean err;
+
+        Dispatcher(PrintStream original, boolean err)
+        {
+            this.original = original;
+            this.err = err;
+        }
+
+        private Capture target()
+        {
+            for (ThreadGroup group = Thread.currentThread().getThreadGroup();
+                 group != null;
+                 group = group.getParent())
+            {
+                if (group instanceof ProgramGroup)
+                    return err ? ((ProgramGroup)group).err : ((ProgramGroup)group).out;
+            }
+            return null;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            Capture capture = target();
+            if (capture == null)
+                original.write(b);
+            else
+                capture.write(b);
+        }
+
+        @Override
+        public void write(byte b[], int off, int len)
+        {
+            Capture capture = target();
+            if (capture == null)
+                original.write(b, off, len);
+            else
+                capture.write(b, off, len);
+        }
+
+        @Override
+        public void flush()
+        {
+            original.flush();
+        }
+    }
+
+    /**
+     * Keeps what is written, up to a cap
+     */
+    static class Capture extends OutputStream
+    {
+        private final int cap;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        Capture(int cap)
+        {
+            this.cap = cap;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            synchronized (buffer)
+            {
+                if (buffer.size() < cap)
+                    buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte b[], int off, int len)
+        {
+            synchronized (buffer)
+            {
+                buffer.write(b, off, Math.max(0, Math.min(len, cap - buffer.size())));
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            synchronized (buffer)
+            {
+                return buffer.toString();
+            }
+        }
+    }
+}
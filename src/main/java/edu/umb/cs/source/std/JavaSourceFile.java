@@ -40,8 +40,11 @@ public class JavaSourceFile implements SourceFile
     private final BracingStyle style;
     private final String outerMost;
 
-    private Output output = null;
-    private ArrayList<Position> nonWhitespaces;
+    // only a conclusive output is kept (a time out may not happen again);
+    // the source may be shared by threads (See SourceFileCache)
+    private volatile Output output = null;
+    // built on first use; the source may be shared by threads (See SourceFileCache)
+    private volatile ArrayList<Position> nonWhitespaces;
     
     public JavaSourceFile(String path,
                           List<List<SourceToken>> tokens,
@@ -129,9 +132,14 @@ public class JavaSourceFile implements SourceFile
     @Override
     public Output compileAndExecute()
     {
-        return output == null
-                ? output = Utils.compile(srcFile, outerMost)
-                : output;
+        Output ret = output;
+        if (ret == null)
+        {
+            ret = Utils.compile(srcFile, outerMost);
+            if (ret.isConclusive())
+                output = ret;
+        }
+        return ret;
     }
 
     @Override
@@ -149,9 +157,11 @@ public class JavaSourceFile implements SourceFile
     @Override
     public ArrayList<Position> getNonWhitespaces()
     {
-        if (nonWhitespaces == null)
+        ArrayList<Position> ret = nonWhitespaces;
+        if (ret == null)
         {
-            nonWhitespaces = new ArrayList<>(tokenCount);
+            // only published once complete
+            ret = new ArrayList<>(tokenCount);
             
             for (int line = srcFile.size() - 1; line >= 0; --line)
             {
@@ -161,12 +171,13 @@ public class JavaSourceFile implements SourceFile
                     SourceToken curTk = curLine.get(tk);
                     if (curTk.kind() != SourceTokenKind.TAB
                             && curTk.kind() != SourceTokenKind.SPACE)
-                        nonWhitespaces.add(new Position(line, tk));
+                        ret.add(new Position(line, tk));
                 }
             }
+            nonWhitespaces = ret;
         }
-        // TODO make deep copy
-        return nonWhitespaces;
+        // shared: callers copy it before modifying it (See SimpleShuffler)
+        return ret;
     }
 
     @Override
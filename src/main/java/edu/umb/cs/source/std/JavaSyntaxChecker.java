@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.*;
+import edu.umb.cs.source.SourceToken;
+import edu.umb.cs.source.SourceTokenKind;
+import edu.umb.cs.source.SyntaxCheck;
+import edu.umb.cs.source.SyntaxCheck.Status;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks an arrangement of tokens against the game's Java grammar
+ * (the one the puzzles were parsed with), without running javac.
+ * 
+ * Every puzzle's original source passes this check, so a token list
+ * that fails it cannot be the solution. Likewise, an INVALID partial 
+ * arrangement cannot be completed into the solution.
+ */
+public class JavaSyntaxChecker
+{
+    private JavaSyntaxChecker() {}
+
+    /**
+     * Only the tokens before the first EMPTY one are checked
+     * 
+     * @param tokens tokens in the order they appear in the source
+     * @return the result
+     */
+    public static SyntaxCheck check(List<SourceToken> tokens)
+    {
+        // start offset of each token in the text fed to the parser
+        int starts[] = new int[tokens.size()];
+        StringBuilder bd = new StringBuilder();
+        int firstEmpty = -1;
+        for (int n = 0; n < tokens.size(); ++n)
+        {
+            SourceToken tk = tokens.get(n);
+            if (tk.kind() == SourceTokenKind.EMPTY)
+            {
+                firstEmpty = n;
+                break;
+            }
+            starts[n] = bd.length();
+            bd.append(tk.image());
+        }
+        int checked = firstEmpty < 0 ? tokens.size() : firstEmpty;
+        String src = bd.toString();
+
+        try
+        {
+            // a tab counts as one column, so that columns are offsets in the line
+            ParserSession.get().parse(src, 1, BracingStyle.ALLMAN);
+        }
+        catch (ParseException ex)
+        {
+            Token bad = ex.currentToken == null ? null : ex.currentToken.next;
+            if (bad == null)
+                return new SyntaxCheck(Status.INVALID, -1, ex.getMessage());
+
+            // running out of tokens at an empty slot says nothing
+            if (bad.kind == JavaParserConstants.EOF)
+                return firstEmpty < 0
+                        ? new SyntaxCheck(Status.INVALID, tokens.size() - 1, ex.getMessage())
+                        : new SyntaxCheck(Status.INCOMPLETE, firstEmpty, null);
+
+            int at = tokenAt(starts, checked, offsetOf(src, bad.beginLine, bad.beginColumn));
+
+            // A syntactic lookahead that ran into the gap may have made the
+            // parser fail at an earlier token. Such a lookahead never goes
+            // past the end of a statement or a block, hence the error is
+            // real only if there is one between it and the gap.
+            if (firstEmpty >= 0 && !hasBoundary(tokens, at, firstEmpty))
+                return new SyntaxCheck(Status.INCOMPLETE, firstEmpty, null);
+
+            return new SyntaxCheck(Status.INVALID, at, ex.getMessage());
+        }
+        catch (TokenMgrError err)
+        {
+            return new SyntaxCheck(Status.INVALID, -1, err.getMessage());
+        }
+
+        // the part before the gap may be complete, but not with what follows
+        return firstEmpty < 0
+                ? new SyntaxCheck(Status.VALID, -1, null)
+                : new SyntaxCheck(Status.INCOMPLETE, firstEmpty, null);
+    }
+
+    private static boolean hasBoundary(List<SourceToken> tokens, int from, int to)
+    {
+        for (int n = from; n < to; ++n)
+        {
+            String img = tokens.get(n).image();
+            if (img.equals(";") || img.equals("{") || img.equals("}"))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return offset of the given (1-based) line and column in src
+     */
+    private static int offsetOf(String src, int line, int column)
+    {
+        int offset = 0;
+        for (int n = 1; n < line; ++n)
+        {
+            offset = src.indexOf('\n', offset) + 1;
+            if (offset == 0)
+                return src.length();
+        }
+        return offset + column - 1;
+    }
+
+    /**
+     * @return index of the token containing the character at the given offset
+     */
+    private static int tokenAt(int starts[], int count, int offset)
+    {
+        int n = Arrays.binarySearch(starts, 0, count, offset);
+        if (n < 0)
+            n = -n - 2;
+        // skip the empty images sharing this offset
+        while (n + 1 < count && starts[n + 1] == starts[n])
+            ++n;
+        return Math.max(n, 0);
+    }
+}
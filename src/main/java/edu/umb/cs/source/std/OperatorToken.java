@@ -21,9 +21,6 @@
 package edu.umb.cs.source.std;
 
 import edu.umb.cs.source.SourceToken;
-import edu.umb.cs.source.SourceTokenKind;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  *
@@ -31,14 +28,12 @@ import java.util.Map;
  */
 public class OperatorToken
 {
-    private static final Map<String, SourceToken> instances
-                = new HashMap<String, SourceToken>();
-
+    /**
+     * @param img
+     * @return the (shared) operator token (See TokenPool)
+     */
     public static SourceToken getOperator(String img)
     {
-        SourceToken tk = instances.get(img);
-        if (tk == null)
-            instances.put(img, tk = new SourceTokenBase(img, SourceTokenKind.OPERATOR));
-        return tk;
+        return TokenPool.operator(img);
     }
 }
@@ -20,12 +20,7 @@
  */
 package edu.umb.cs.source.std;
 
-import edu.umb.cs.parser.InternalException;
 import edu.umb.cs.source.SourceToken;
-import edu.umb.cs.source.SourceTokenKind;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  *
@@ -33,22 +28,12 @@ import java.util.Map;
  */
 public class SeparatorToken
 {
-    private static final Map<String, SourceToken> seps = computeMap();
-    private static Map<String, SourceToken> computeMap()
-    {
-        Map<String, SourceToken> ret = new HashMap<>();
-        
-        for (String st : Arrays.asList("[", "]", "{", "}", "(", ")", ",", ";", "."))
-            ret.put(st, new SourceTokenBase(st, SourceTokenKind.SEPARATOR));
-        
-        return ret;
-    }
-    
+    /**
+     * @param img
+     * @return the (shared) separator token (See TokenPool)
+     */
     public static SourceToken getSep(String img)
     {
-        SourceToken tk = seps.get(img);
-        if (tk == null)
-            throw new InternalException("no such seperator");
-        return tk;
+        return TokenPool.separator(img);
     }
 }
@@ -21,6 +21,7 @@
 
 package edu.umb.cs.source.std;
 
+import edu.umb.cs.source.Position;
 import edu.umb.cs.source.ShuffledSource;
 import edu.umb.cs.source.SourceFile;
 import edu.umb.cs.source.SourceToken;
@@ -35,15 +36,18 @@ public class ShuffledSourceImpl implements ShuffledSource
     private final SourceFile original;
     private final SourceFile shuffled;
     private final List<SourceToken> removed;
+    private final List<Position> removedPositions;
     private final int removable;
     public ShuffledSourceImpl(SourceFile original,
                               SourceFile shuffled,
                               List<SourceToken> removed,
+                              List<Position> removedPositions,
                               int removable)
     {
         this.original = original;
         this.shuffled = shuffled;
         this.removed = removed;
+        this.removedPositions = removedPositions;
         this.removable = removable;
     }
 
@@ -64,6 +68,12 @@ public class ShuffledSourceImpl implements ShuffledSource
     {
         return removed;
     }
+
+    @Override
+    public List<Position> getRemovedPositions()
+    {
+        return removedPositions;
+    }
     
     public int totalRemovable()
     {
@@ -22,51 +22,106 @@
 package edu.umb.cs.source.std;
 
 import edu.umb.cs.source.*;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Tokens are taken out at random, there are no weights whatsoever
+ * 
+ * The tokens are picked with a partial Fisher-Yates shuffle over the indexes
+ * of the non-whitespace positions, so taking out k tokens costs O(k) no matter
+ * how big the source is. The source is never modified: the shuffled source
+ * is a view of its lines, where only the lines that lost a token are copied.
+ * 
  * @author Vy Thao Nguyen
  */
 public class SimpleShuffler implements Shuffler
 {
     public static final SimpleShuffler INSTANCE = new SimpleShuffler();
 
+    // per thread, so shuffling needs neither locks nor new arrays
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>()
+    {
+        @Override
+        protected Scratch initialValue()
+        {
+            return new Scratch();
+        }
+    };
+
     @Override
     public ShuffledSource shuffle(SourceFile src, int toRemove)
     {
-        Random rand = new Random();
-        int hasRemoved = 0;
+        return shuffle(src, toRemove, ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param rand where the random indexes come from
+     * @see #shuffle(SourceFile, int) 
+     */
+    ShuffledSource shuffle(SourceFile src, int toRemove, Random rand)
+    {
+        // a compact source has its positions as an int[] already
+        CompactSourceFile compact = src instanceof CompactSourceFile
+                                        ? (CompactSourceFile)src
+                                        : null;
+        int indexes[] = compact == null ? null : compact.nonWhitespaceIndexes();
+        int lines[] = compact == null ? null : compact.nonWhitespaceLines();
+        // the source's list is shared (See SourceFileCache): it is only read
+        List<Position> removable = compact == null ? src.getNonWhitespaces() : null;
+        int total = compact == null ? removable.size() : indexes.length;
 
-        List<List<SourceToken>>  newSrc = buildList(src);
-        List<SourceToken> removed = new ArrayList<>(toRemove);
-        ArrayList<Position> removable = src.getNonWhitespaces();
-        
         // TODO: issue some warning here?
-        toRemove = Math.min(toRemove, removable.size());
-        
-        while (hasRemoved != toRemove)
+        toRemove = Math.max(0, Math.min(toRemove, total));
+
+        Scratch scratch = SCRATCH.get();
+        int perm[] = scratch.permutation(total);
+        int swaps[] = scratch.swaps(toRemove);
+
+        List<SourceToken> removed = new ArrayList<>(toRemove);
+        List<Position> positions = new ArrayList<>(toRemove);
+        ShuffledLines newSrc = new ShuffledLines(src.getAll(), toRemove);
+        for (int n = 0; n < toRemove; ++n)
+        {
+            // perm[n..total) are the indexes not picked yet
+            int pick = n + rand.nextInt(total - n);
+            swaps[n] = pick;
+            int chosen = perm[pick];
+            perm[pick] = perm[n];
+            perm[n] = chosen;
+
+            Position pos;
+            if (compact == null)
+                pos = removable.get(chosen);
+            else
+            {
+                int line = lines[chosen];
+                pos = new Position(line, indexes[chosen] - compact.lineStart(line));
+            }
+            removed.add(newSrc.take(pos));
+            positions.add(pos);
+        }
+
+        // undo the swaps, in reverse, so the permutation is the identity again
+        for (int n = toRemove - 1; n >= 0; --n)
         {
-            int i = rand.nextInt(removable.size());
-            Position pos = removable.get(i);
-            removable.remove(i);
-            
-            List<SourceToken> curLine = newSrc.get(pos.getLine());
-            SourceToken tk = curLine.get(pos.getPos());
-            curLine.set(pos.getPos(), EmptyToken.INSTANCE);
-            removed.add(tk);
-            ++hasRemoved;
+            int tmp = perm[n];
+            perm[n] = perm[swaps[n]];
+            perm[swaps[n]] = tmp;
         }
- 
+
         SourceFile shuffled = new JavaSourceFile("UNKNOWN_PATH",
                                                  newSrc,
                                                  src.tokenCount(),
                                                  src.getStyle(),
                                                  src.getClassName());
 
-        return new ShuffledSourceImpl(src, shuffled, removed, removable.size());
+        return new ShuffledSourceImpl(src, shuffled, removed, positions, total - toRemove);
     }
 
     @Override
@@ -75,9 +130,84 @@ public class SimpleShuffler implements Shuffler
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * @param src
+     * @return a new list of the lines of the source (the lines themselves are shared)
+     */
     static List<List<SourceToken>> buildList(SourceFile src)
     {
-        // TODO: deep copy
-        return src.getAll();
+        return new ArrayList<>(src.getAll());
+    }
+
+    /**
+     * The lines of a source, except for those that lost a token,
+     * which are copied the first time a token is taken out of them
+     */
+    private static class ShuffledLines extends AbstractList<List<SourceToken>>
+    {
+        private final List<List<SourceToken>> lines;
+        private final Map<Integer, List<SourceToken>> copied;
+
+        ShuffledLines(List<List<SourceToken>> lines, int toRemove)
+        {
+            this.lines = lines;
+            copied = new HashMap<>(Math.max(16, toRemove * 2));
+        }
+
+        /**
+         * Replace the token at the given position with an empty one
+         * @return the token that was there
+         */
+        SourceToken take(Position pos)
+        {
+            List<SourceToken> line = copied.get(pos.getLine());
+            if (line == null)
+            {
+                line = new ArrayList<>(lines.get(pos.getLine()));
+                copied.put(pos.getLine(), line);
+            }
+            return line.set(pos.getPos(), EmptyToken.INSTANCE);
+        }
+
+        @Override
+        public List<SourceToken> get(int index)
+        {
+            List<SourceToken> line = copied.get(index);
+            return line == null ? lines.get(index) : line;
+        }
+
+        @Override
+        public int size()
+        {
+            return lines.size();
+        }
+    }
+
+    /**
+     * A permutation of the indexes of the removable positions (the identity
+     * between two shuffles) and room to remember the swaps done to it
+     */
+    private static class Scratch
+    {
+        private int perm[] = new int[0];
+        private int swaps[] = new int[0];
+
+        int[] permutation(int size)
+        {
+            if (perm.length < size)
+            {
+                perm = new int[Math.max(size, perm.length * 2)];
+                for (int n = 0; n < perm.length; ++n)
+                    perm[n] = n;
+            }
+            return perm;
+        }
+
+        int[] swaps(int size)
+        {
+            if (swaps.length < size)
+                swaps = new int[Math.max(size, swaps.length * 2)];
+            return swaps;
+        }
     }
 }
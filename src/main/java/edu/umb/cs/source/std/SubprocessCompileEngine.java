@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.CompileEngine;
+import edu.umb.cs.source.Output;
+
+/**
+ * Compiles and runs the source with the external <code>javac</code> and
+ * <code>java</code> commands
+ * 
+ * @see Utils#compile(String, String)
+ */
+public class SubprocessCompileEngine implements CompileEngine
+{
+    public static final SubprocessCompileEngine INSTANCE = new SubprocessCompileEngine();
+
+    private SubprocessCompileEngine() {}
+
+    @Override
+    public Output compile(String src, String outer)
+    {
+        return Utils.compile(src, outer);
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.InternalException;
+import edu.umb.cs.source.SourceToken;
+import edu.umb.cs.source.SourceTokenKind;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out the token objects, so that the same token is not allocated
+ * over and over.
+ * 
+ * Keywords, operators and separators come from the grammar: there is one
+ * (immutable) instance per image, shared by all parses on all threads.
+ * 
+ * Identifiers and literals depend on the source: an instance of the pool 
+ * interns them for one parse (the same name shares one token within a 
+ * source). It is not thread-safe; each parser has its own.
+ */
+public class TokenPool
+{
+    private static final ConcurrentMap<String, SourceToken> keywords
+            = populate(SourceTokenKind.KEYWORD,
+                       "abstract", "boolean", "byte", "char", "class", "do",
+                       "double", "else", "extends", "false", "final", "float",
+                       "if", "import", "instanceof", "int", "long", "new",
+                       "null", "package", "private", "protected", "public",
+                       "return", "short", "static", "super", "this", "throws",
+                       "true", "void", "while");
+
+    private static final ConcurrentMap<String, SourceToken> operators
+            = populate(SourceTokenKind.OPERATOR,
+                       "+", "=", "/", "--", "==", ">", "++", "&&", "<=", "!",
+                       "-", "%", "+=", "*", "<", ">=", ".");
+
+    private static final ConcurrentMap<String, SourceToken> separators
+            = populate(SourceTokenKind.SEPARATOR,
+                       "[", "]", "{", "}", "(", ")", ",", ";", ".");
+
+    private final Map<String, SourceToken> identifiers = new HashMap<>();
+    private final Map<String, SourceToken> numLiterals = new HashMap<>();
+    private final Map<String, SourceToken> stringLiterals = new HashMap<>();
+    private final Map<String, SourceToken> charLiterals = new HashMap<>();
+
+    private static ConcurrentMap<String, SourceToken> populate(SourceTokenKind kind, String... imgs)
+    {
+        ConcurrentMap<String, SourceToken> ret = new ConcurrentHashMap<>();
+        for (String img : imgs)
+            ret.put(img, create(kind, img));
+        return ret;
+    }
+
+    private static SourceToken create(SourceTokenKind kind, String img)
+    {
+        switch (kind)
+        {
+            case KEYWORD:
+                return new KeywordToken(img);
+            case IDENTIFIER:
+                return new IdentifierToken(img);
+            case NUM_LITERAL:
+                return new NumLiteralToken(img);
+            case STRING_LITERAL:
+                return new StringLiteralToken(img);
+            case CHAR_LITERAL:
+                return new CharLiteralToken(img);
+            default:
+                return new SourceTokenBase(img, kind);
+        }
+    }
+
+    private static SourceToken shared(ConcurrentMap<String, SourceToken> tokens,
+                                      SourceTokenKind kind, String img)
+    {
+        SourceToken tk = tokens.get(img);
+        if (tk == null)
+        {
+            // not in the grammar's list
+            SourceToken prev = tokens.putIfAbsent(img, tk = create(kind, img));
+            if (prev != null)
+                tk = prev;
+        }
+        return tk;
+    }
+
+    public static SourceToken keyword(String img)
+    {
+        return shared(keywords, SourceTokenKind.KEYWORD, img);
+    }
+
+    public static SourceToken operator(String img)
+    {
+        return shared(operators, SourceTokenKind.OPERATOR, img);
+    }
+
+    /**
+     * @param img
+     * @return the separator
+     * @throws InternalException if there is no such separator
+     */
+    public static SourceToken separator(String img)
+    {
+        SourceToken tk = separators.get(img);
+        if (tk == null)
+            throw new InternalException("no such seperator");
+        return tk;
+    }
+
+    private static SourceToken interned(Map<String, SourceToken> tokens,
+                                        SourceTokenKind kind, String img)
+    {
+        SourceToken tk = tokens.get(img);
+        if (tk == null)
+            tokens.put(img, tk = create(kind, img));
+        return tk;
+    }
+
+    public SourceToken identifier(String img)
+    {
+        return interned(identifiers, SourceTokenKind.IDENTIFIER, img);
+    }
+
+    public SourceToken numLiteral(String img)
+    {
+        return interned(numLiterals, SourceTokenKind.NUM_LITERAL, img);
+    }
+
+    public SourceToken stringLiteral(String img)
+    {
+        return interned(stringLiterals, SourceTokenKind.STRING_LITERAL, img);
+    }
+
+    public SourceToken charLiteral(String img)
+    {
+        return interned(charLiterals, SourceTokenKind.CHAR_LITERAL, img);
+    }
+
+    /**
+     * Forget the identifiers and literals (eg., before parsing another source)
+     */
+    public void clear()
+    {
+        identifiers.clear();
+        numLiterals.clear();
+        stringLiterals.clear();
+        charLiterals.clear();
+    }
+
+    /**
+     * @return number of identifiers and literals interned
+     */
+    public int size()
+    {
+        return identifiers.size() + numLiterals.size()
+                + stringLiterals.size() + charLiterals.size();
+    }
+}
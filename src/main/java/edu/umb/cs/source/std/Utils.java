@@ -24,7 +24,12 @@ import com.google.common.io.CharStreams;
 import edu.umb.cs.source.Output;
 import edu.umb.cs.source.SourceToken;
 import java.io.*;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,35 +46,93 @@ public class Utils
         tempDir.mkdirs();
     }
 
-    public static Output compile(String src, String outer)
+    /**
+     * Remove the package declaration, if any, so that the outer class
+     * can be compiled and run without having to create the package dirs
+     * 
+     * @param src
+     * @return the source without its package declaration
+     */
+    public static String stripPackage(String src)
     {
-        // remove the package (to avoid having to create dirs)
         if (src.startsWith("package"))
         {
             int n = 0;
             for (; n < src.length(); ++n)
             {
                 if (src.charAt(n) == ';')
-                {
-                    src = src.substring(n+1);
-                    break;
-                }
+                    return src.substring(n+1);
             }
         }
+        return src;
+    }
+
+    /**
+     * @param content
+     * @return the SHA-1 digest of the given bytes, in hex
+     */
+    public static String hash(byte content[])
+    {
+        try
+        {
+            byte digest[] = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder bd = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                bd.append(Character.forDigit((b >> 4) & 0xf, 16))
+                  .append(Character.forDigit(b & 0xf, 16));
+            return bd.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // every JRE has SHA-1
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * @param src
+     * @return the content of the file represented by the given lines of tokens
+     */
+    public static String toSource(List<List<SourceToken>> src)
+    {
+        StringBuilder bd = new StringBuilder();
+        for (List<SourceToken> line : src)
+            for (SourceToken tk : line)
+                bd.append(tk.image());
+        return bd.toString();
+    }
+
+    /**
+     * Compile the source with <code>javac</code>, then run it in one of the 
+     * (already started) JVMs of the WorkerPool
+     * 
+     * @param src
+     * @param outer name of the outer most class
+     * @return the program's output
+     */
+    public static Output compile(String src, String outer)
+    {
+        // remove the package (to avoid having to create dirs)
+        src = stripPackage(src);
+        File workDir = null;
         try
         {
             int retcode = 0;
             String fn = outer + ".java";
 
+            // each compilation gets its own directory,
+            // so that concurrent ones do not overwrite each other's files
+            workDir = Files.createTempDirectory(tempDir.toPath(), outer).toFile();
+
             // write the source to file
-            FileWriter fstream = new FileWriter(tempDir.getAbsolutePath() + "/" + fn);
+            FileWriter fstream = new FileWriter(new File(workDir, fn));
             BufferedWriter outFile = new BufferedWriter(fstream);
             outFile.write(src);
             //Close the output stream
             outFile.close();
 
             // compile the source
-            Process p = Runtime.getRuntime().exec("javac " + fn, null, tempDir);            
+            Process p = Runtime.getRuntime().exec("javac " + fn, null, workDir);            
             try
             {
                 p.waitFor();
@@ -77,8 +140,10 @@ public class Utils
             }
             catch (InterruptedException ex)
             {
-                Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-                return new Output(ex.getMessage(), true);
+                // cancelled: do not leave javac running
+                p.destroy();
+                Thread.currentThread().interrupt();
+                return new Output("Compilation was interrupted", true, false);
             }
 
             if (retcode != 0)
@@ -89,105 +154,49 @@ public class Utils
             }
             
             // execute the source
-            p = Runtime.getRuntime().exec("java " + outer, null, tempDir);
-            try
-            {
-                p.waitFor();
-                retcode = p.exitValue();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-                return new Output(ex.getMessage(), true);
-            }
-            
-            if (retcode != 0)
-            {
-                // something wrong!
-                return new Output(CharStreams.toString(new InputStreamReader(p.getErrorStream())),
-                                  true);
-            }
-
-            // otherwise, return the output
-            String ret = CharStreams.toString(new InputStreamReader(p.getInputStream()));
-
-            // TODO: clean up the temp files ?
-            return new Output(ret, false);
+            return WorkerPool.getInstance().execute(readClasses(workDir), outer);
         }
         catch (IOException ex)
         {
             Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-            return new Output(ex.getMessage(), true);
+            return new Output(ex.getMessage(), true, false);
+        }
+        finally
+        {
+            if (workDir != null)
+                delete(workDir);
         }
     }
     
     static Output compile(List<List<SourceToken>> src, String outer)
     {
-        try
-        {
-            int retcode = 0;
-            String fn = outer + ".java";
-
-            // write the source to file
-            FileWriter fstream = new FileWriter(tempDir.getAbsolutePath() + "/" + fn);
-            BufferedWriter outFile = new BufferedWriter(fstream);
-
-            for (List<SourceToken> line : src)
-                for (SourceToken tk : line)
-                    outFile.write(tk.image());            
-            //Close the output stream
-            outFile.close();
-
-            // compile the source
-            Process p = Runtime.getRuntime().exec("javac " + fn, null, tempDir);            
-            try
-            {
-                p.waitFor();
-                retcode = p.exitValue();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-                return new Output(ex.getMessage(), true);
-            }
-
-            if (retcode != 0)
-            {
-                // cannot compile!
-                return new Output(CharStreams.toString(new InputStreamReader(p.getErrorStream())),
-                                  true);
-            }
-            
-            // execute the source
-            p = Runtime.getRuntime().exec("java " + outer, null, tempDir);
-            try
-            {
-                p.waitFor();
-                retcode = p.exitValue();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-                return new Output(ex.getMessage(), true);
-            }
-            
-            if (retcode != 0)
-            {
-                // something wrong!
-                return new Output(CharStreams.toString(new InputStreamReader(p.getErrorStream())),
-                                  true);
-            }
+        return compile(toSource(src), outer);
+    }
 
-            // otherwise, return the output
-            String ret = CharStreams.toString(new InputStreamReader(p.getInputStream()));
+    // ---- private helpers -----------
 
-            // TODO: clean up the temp files ?
-            return new Output(ret, false);
-        }
-        catch (IOException ex)
+    /**
+     * @return class name to content of each class file in the given directory
+     */
+    private static Map<String, byte[]> readClasses(File dir) throws IOException
+    {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (File f : dir.listFiles())
         {
-            Logger.getLogger(Utils.class.getName()).log(Level.SEVERE, null, ex);
-            return new Output(ex.getMessage(), true);
+            String name = f.getName();
+            if (name.endsWith(".class"))
+                classes.put(name.substring(0, name.length() - ".class".length()),
+                            Files.readAllBytes(f.toPath()));
         }
+        return classes;
+    }
+
+    private static void delete(File dir)
+    {
+        File files[] = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
     }
 }
@@ -0,0 +1,402 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.Output;
+import java.io.*;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of long-lived worker JVMs (See ExecutionWorker) that run compiled
+ * programs outside of the game's JVM, without paying for a fresh 
+ * <code>java</code> start up on every run.
+ * 
+ * A worker is replaced after <pre>maxRuns</pre> runs, after a program that 
+ * did not finish cleanly, or when it crashes.
+ * 
+ * The protocol (over the worker's stdin/stdout) is, for each run:
+ * <pre>
+ *   request ::= UTF outer, long timeout, int outputCap,
+ *               int count, count * (UTF className, int length, byte[length])
+ *   reply   ::= boolean isError, boolean conclusive,
+ *               int length, byte[length] (UTF-8 output), boolean exiting
+ * </pre>
+ * An exiting worker's exit status is that of the program, if it called
+ * System.exit().
+ * 
+ * The default pool's size and the number of runs per worker can be set with
+ * the <code>tokanagrammar.workers</code> and <code>tokanagrammar.workerRuns</code>
+ * properties.
+ */
+public class WorkerPool
+{
+    public static final String SIZE_PROPERTY = "tokanagrammar.workers";
+    public static final String RUNS_PROPERTY = "tokanagrammar.workerRuns";
+    static final int DEFAULT_SIZE = 2;
+    static final int DEFAULT_RUNS = 50;
+
+    /**
+     * How long (in milliseconds) to wait for a worker's reply, 
+     * on top of the program's own time out
+     */
+    private static final long GRACE = 3000;
+    /**
+     * How often (in milliseconds) a caller waiting for a free worker
+     * checks that the pool can still give it one
+     */
+    private static final long ACQUIRE_POLL = 200;
+    private static final String WORKER_HEAP = "-Xmx128m";
+
+    private static WorkerPool instance;
+
+    /**
+     * @return the pool used by Utils.compile (started on first use)
+     */
+    public static synchronized WorkerPool getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new WorkerPool(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE),
+                                      Integer.getInteger(RUNS_PROPERTY, DEFAULT_RUNS));
+            final WorkerPool pool = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    pool.shutdown();
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the default pool's workers, if it was ever started
+     */
+    public static synchronized void shutdownInstance()
+    {
+        if (instance != null)
+        {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private final int maxRuns;
+    private final long timeout;
+    private final int outputCap;
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    // number of workers that are alive or being started
+    private final AtomicInteger alive = new AtomicInteger();
+    // starts the workers, and waits for their replies
+    private final ExecutorService helpers = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "worker-pool");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private volatile boolean shutdown = false;
+
+    /**
+     * Start <pre>size</pre> workers 
+     * @param size number of workers
+     * @param maxRuns number of runs after which a worker is replaced
+     */
+    public WorkerPool(int size, int maxRuns)
+    {
+        this(size, maxRuns, InMemoryCompileEngine.RUN_TIME_OUT, InMemoryCompileEngine.OUTPUT_CAP);
+    }
+
+    WorkerPool(int size, int maxRuns, long timeout, int outputCap)
+    {
+        if (size < 1 || maxRuns < 1)
+            throw new IllegalArgumentException("size and maxRuns must be positive");
+        this.maxRuns = maxRuns;
+        this.timeout = timeout;
+        this.outputCap = outputCap;
+        for (int n = 0; n < size; ++n)
+            startWorker();
+    }
+
+    /**
+     * Run the main method of <pre>outer</pre> in one of the workers.
+     * This waits for a worker to be free.
+     * 
+     * @param classes class name to class file content
+     * @param outer name of the class whose main method is run
+     * @return the program's output
+     */
+    public Output execute(Map<String, byte[]> classes, String outer)
+    {
+        Worker worker;
+        try
+        {
+            worker = acquire();
+            if (worker == null)
+                return new Output("The worker pool has been shut down", true, false);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(WorkerPool.class.getName()).log(Level.SEVERE, null, ex);
+            return new Output("Could not start a worker: " + ex.getMessage(), true, false);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return new Output("Program was interrupted", true, false);
+        }
+
+        boolean reusable = false;
+        try
+        {
+            Output out = worker.run(classes, outer);
+            reusable = !worker.exiting && worker.runs < maxRuns;
+            return out;
+        }
+        catch (IOException ex)
+        {
+            return new Output("The program ended unexpectedly (its JVM died)", true, false);
+        }
+        catch (TimeoutException ex)
+        {
+            return new Output("Program took too long (more than "
+                                + timeout / 1000 + " seconds)", true, false);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return new Output("Program was interrupted", true, false);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // shut down while sending the program
+            return new Output("The worker pool has been shut down", true, false);
+        }
+        finally
+        {
+            if (reusable && !shutdown)
+            {
+                idle.offer(worker);
+                // shut down in the meantime (after the idle workers were stopped)
+                if (shutdown && idle.remove(worker))
+                    worker.destroy();
+            }
+            else
+                retire(worker);
+        }
+    }
+
+    /**
+     * Stop all the workers. Any run in progress fails.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+        Worker worker;
+        while ((worker = idle.poll()) != null)
+            worker.destroy();
+        helpers.shutdownNow();
+    }
+
+    /**
+     * @return number of workers alive (or being started)
+     */
+    public int size()
+    {
+        return alive.get();
+    }
+
+    // ---- private helpers -----------
+
+    /**
+     * Waits for a free worker. The workers being started may fail to,
+     * and the pool may be shut down, hence this checks again every so often
+     * 
+     * @return a free worker, or null if the pool has been shut down
+     * @throws IOException if no worker is alive, and one cannot be started here
+     */
+    private Worker acquire() throws IOException, InterruptedException
+    {
+        while (!shutdown)
+        {
+            Worker worker = idle.poll();
+            if (worker != null)
+                return worker;
+            if (alive.get() == 0)
+            {
+                // every worker failed to start; try once more here
+                alive.incrementAndGet();
+                try
+                {
+                    return new Worker();
+                }
+                catch (IOException ex)
+                {
+                    alive.decrementAndGet();
+                    throw ex;
+                }
+            }
+            worker = idle.poll(ACQUIRE_POLL, TimeUnit.MILLISECONDS);
+            if (worker != null)
+                return worker;
+        }
+        return null;
+    }
+
+    private void startWorker()
+    {
+        alive.incrementAndGet();
+        helpers.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Worker worker = new Worker();
+                    if (shutdown)
+                        worker.destroy();
+                    else
+                        idle.offer(worker);
+                }
+                catch (IOException ex)
+                {
+                    alive.decrementAndGet();
+                    Logger.getLogger(WorkerPool.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+    }
+
+    private void retire(Worker worker)
+    {
+        worker.destroy();
+        alive.decrementAndGet();
+        if (!shutdown)
+            startWorker();
+    }
+
+    private class Worker
+    {
+        private final Process process;
+        private final DataOutputStream toWorker;
+        private final DataInputStream fromWorker;
+        private int runs = 0;
+        private boolean exiting = false;
+
+        Worker() throws IOException
+        {
+            String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+            process = new ProcessBuilder(java,
+                                         WORKER_HEAP,
+                                         "-cp", System.getProperty("java.class.path"),
+                                         ExecutionWorker.class.getName())
+                            .redirectError(Redirect.INHERIT)
+                            .start();
+            toWorker = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            fromWorker = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        Output run(Map<String, byte[]> classes, String outer)
+                throws IOException, TimeoutException, InterruptedException
+        {
+            ++runs;
+            toWorker.writeUTF(outer);
+            toWorker.writeLong(timeout);
+            toWorker.writeInt(outputCap);
+            toWorker.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> cls : classes.entrySet())
+            {
+                toWorker.writeUTF(cls.getKey());
+                toWorker.writeInt(cls.getValue().length);
+                toWorker.write(cls.getValue());
+            }
+            toWorker.flush();
+
+            // wait for the reply in another thread, so that this one can 
+            // give up (time out or be interrupted) without being stuck in a read
+            Future<Output> reply = helpers.submit(new Callable<Output>()
+            {
+                @Override
+                public Output call() throws IOException, InterruptedException
+                {
+                    boolean isError = fromWorker.readBoolean();
+                    boolean conclusive = fromWorker.readBoolean();
+                    byte text[] = new byte[fromWorker.readInt()];
+                    fromWorker.readFully(text);
+                    exiting = fromWorker.readBoolean();
+                    String output = new String(text, ExecutionWorker.UTF8);
+                    if (exiting)
+                    {
+                        // the program may have called System.exit(), 
+                        // whose status is the worker's
+                        int status = process.waitFor();
+                        if (status != 0)
+                            return new Output(output + "Program exited with status "
+                                                + status + "\n", true, conclusive);
+                    }
+                    return new Output(output, isError, conclusive);
+                }
+            });
+            try
+            {
+                return reply.get(timeout + GRACE, TimeUnit.MILLISECONDS);
+            }
+            catch (ExecutionException ex)
+            {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException)cause;
+                if (cause instanceof InterruptedException)
+                    throw new IOException("Interrupted while waiting for the worker to exit");
+                throw new IOException(cause);
+            }
+            finally
+            {
+                // (no-op if the reply has been read)
+                reply.cancel(true);
+            }
+        }
+
+        void destroy()
+        {
+            try
+            {
+                toWorker.close();
+            }
+            catch (IOException ex)
+            {
+                // the worker is gone already
+            }
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+import edu.umb.cs.source.CompileEngineKind;
+import edu.umb.cs.source.Output;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * APIs.compileAsync with both engines (does not need the database)
+ */
+public class CompileAsyncTest
+{
+    private static final String HELLO
+            = "public class Hello { public static void main(String[] args) "
+            + "{ System.out.print(\"hello\"); } }";
+
+    private static final String LOOP
+            = "public class Loop { public static void main(String[] args) "
+            + "{ while (true); } }";
+
+    @Test
+    public void testCompile() throws Exception
+    {
+        for (CompileEngineKind engine : CompileEngineKind.values())
+        {
+            if (!engine.isAvailable())
+                continue;
+            final CountDownLatch notified = new CountDownLatch(1);
+            CompileFuture compile = APIs.compileAsync(HELLO, "Hello", engine);
+            compile.addListener(new CompileFuture.Listener()
+            {
+                @Override
+                public void done(CompileFuture compile)
+                {
+                    notified.countDown();
+                }
+            });
+
+            Output out = compile.get(30, TimeUnit.SECONDS);
+            assertFalse(out.getOuput(), out.isError());
+            assertEquals("hello", out.getOuput());
+            assertTrue(notified.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        for (CompileEngineKind engine : CompileEngineKind.values())
+        {
+            if (!engine.isAvailable())
+                continue;
+            // keep every compile thread busy
+            CompileFuture loops[] = new CompileFuture[2];
+            for (int n = 0; n < loops.length; ++n)
+                loops[n] = APIs.compileAsync(LOOP + " // " + engine + n, "Loop", engine);
+            Thread.sleep(1500);
+            for (CompileFuture loop : loops)
+            {
+                assertTrue(loop.cancel(true));
+                assertTrue(loop.isCancelled());
+            }
+
+            // the compile threads are free again well before the programs' time-out
+            long start = System.nanoTime();
+            Output out = APIs.compileAsync(HELLO + " // " + engine, "Hello", engine)
+                             .get(30, TimeUnit.SECONDS);
+            assertEquals("hello", out.getOuput());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.source.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SolutionVerifierTest
+{
+    private static final File SRC = new File("src/test/resources/sources/javaccparse/test-gcd.in");
+
+    @Test
+    public void testMatchesOriginal() throws Exception
+    {
+        SourceFile orig = SourceFiles.getSourceFile(SRC, Language.JAVA, BracingStyle.ALLMAN);
+        ShuffledSource shuffled = APIs.shuffle(orig, 50);
+        SolutionVerifier verifier = new SolutionVerifier(shuffled);
+
+        // the board as built by the GUI, with the removed tokens put back
+        List<Integer> slots = new ArrayList<>();
+        List<SourceToken> board = new ArrayList<>();
+        SourceFile src = shuffled.getShuffledSource();
+        for (int line = 0; line < src.lineCount(); ++line)
+        {
+            for (int pos = 0; pos < src.tokenCount(line); ++pos)
+            {
+                int n = shuffled.getRemovedPositions().indexOf(new Position(line, pos));
+                if (n >= 0)
+                {
+                    slots.add(board.size());
+                    board.add(shuffled.getRemovedTokens().get(n));
+                }
+                else
+                    board.add(src.getToken(line, pos));
+            }
+        }
+        assertTrue(slots.size() > 1);
+
+        long skipped = SolutionVerifier.getSkippedCompileCount();
+        assertTrue(verifier.matchesOriginal(board));
+        assertEquals(skipped + 1, SolutionVerifier.getSkippedCompileCount());
+
+        // swap two placed tokens with different images
+        int first = slots.get(0);
+        for (int slot : slots)
+        {
+            if (!board.get(slot).image().equals(board.get(first).image()))
+            {
+                SourceToken tk = board.set(first, board.get(slot));
+                board.set(slot, tk);
+                break;
+            }
+        }
+        long submissions = SolutionVerifier.getSubmissionCount();
+        assertFalse(verifier.matchesOriginal(board));
+        assertEquals(submissions + 1, SolutionVerifier.getSubmissionCount());
+        assertEquals(skipped + 1, SolutionVerifier.getSkippedCompileCount());
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.api;
+
+import edu.umb.cs.entity.GameTelemetry;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TelemetryRecorderTest
+{
+    private static final long MS = 1000000;
+
+    @Test
+    public void testPausesAndCompiles() throws InterruptedException
+    {
+        TelemetryRecorder rec = new TelemetryRecorder();
+        rec.move();
+        rec.move();
+        rec.pause();
+        rec.pause();    // already paused
+        Thread.sleep(20);
+        rec.resume();
+        rec.resume();   // not paused anymore
+        rec.attempt();
+        rec.compileStarted();
+        Thread.sleep(20);
+        rec.compileFinished();
+        rec.compileFinished();
+
+        GameTelemetry t = rec.finish();
+        assertEquals(1, t.getPauses());
+        assertEquals(1, t.getAttempts());
+        assertEquals(2, t.getMoves());
+        assertTrue(t.getPausedNanos() >= 20 * MS);
+        assertTrue(t.getCompileWaitNanos() >= 20 * MS);
+        assertTrue(t.getTotalNanos() >= t.getPausedNanos() + t.getCompileWaitNanos());
+        assertEquals(t.getTotalNanos() - t.getPausedNanos(), t.getActiveNanos());
+    }
+
+    @Test
+    public void testFinishWhilePaused() throws InterruptedException
+    {
+        TelemetryRecorder rec = new TelemetryRecorder();
+        rec.pause();
+        Thread.sleep(10);
+        GameTelemetry t = rec.finish();
+        assertTrue(t.getPausedNanos() >= 10 * MS);
+        assertTrue(t.getActiveNanos() >= 0);
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.api.LeaderboardEntry;
+import edu.umb.cs.entity.Game;
+import edu.umb.cs.entity.GameTelemetry;
+import edu.umb.cs.entity.Hint;
+import edu.umb.cs.entity.Puzzle;
+import edu.umb.cs.entity.User;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+public class CatalogSyncTest
+{
+    private File dir;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        DatabaseService.openConnection("test");
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        DatabaseService.closeConnection();
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        DatabaseService.deleteAll();
+        dir = File.createTempFile("puzzles", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testUnchangedFilesAreSkipped() throws IOException
+    {
+        File a = puzzle("A", "# Simple\n# A\n", "A");
+        puzzle("B", "# Simple\n# B\n", "B");
+        CatalogSync.Report report = CatalogSync.sync(dir);
+        assertEquals(2, report.getAdded());
+        String output = DatabaseService.getPuzzle(a.getAbsolutePath()).getExpectedOutput();
+
+        // same modification time: the file is not even read
+        long time = a.lastModified();
+        puzzle("A", "# Simple\n# Changed\n", "Changed");
+        a.setLastModified(time);
+
+        report = CatalogSync.sync(dir);
+        assertEquals(2, report.getUnchanged());
+        assertEquals(0, report.getAdded() + report.getUpdated()
+                        + report.getTouched() + report.getRemoved());
+        DatabaseService.getEntityManager().clear();
+        assertEquals(output, DatabaseService.getPuzzle(a.getAbsolutePath()).getExpectedOutput());
+    }
+
+    @Test
+    public void testTouchedFileOnlyGetsNewTime() throws IOException
+    {
+        File a = puzzle("A", "# Simple\n# A\n# first\n", "A");
+        CatalogSync.sync(dir);
+        Puzzle p = DatabaseService.getPuzzle(a.getAbsolutePath());
+        long id = p.getId();
+        String hash = p.getSourceHash();
+
+        long time = a.lastModified() + 10000;
+        a.setLastModified(time);
+        CatalogSync.Report report = CatalogSync.sync(dir);
+        assertEquals(1, report.getTouched());
+        assertEquals(0, report.getUpdated());
+        assertEquals(0, report.getUnchanged());
+
+        DatabaseService.getEntityManager().clear();
+        p = DatabaseService.getPuzzle(a.getAbsolutePath());
+        assertEquals(id, p.getId());
+        assertEquals(hash, p.getSourceHash());
+        assertEquals(time, p.getLastModified());
+        assertEquals(Arrays.asList("first"), hints(p));
+
+        report = CatalogSync.sync(dir);
+        assertEquals(1, report.getUnchanged());
+        assertEquals(0, report.getTouched());
+    }
+
+    @Test
+    public void testChangedFileIsUpdated() throws IOException
+    {
+        File a = puzzle("A", "# Simple\n# A\n# first\n", "A");
+        CatalogSync.sync(dir);
+        long id = DatabaseService.getPuzzle(a.getAbsolutePath()).getId();
+
+        long time = a.lastModified() + 10000;
+        puzzle("A", "# Loops\n# Changed\n# second,third\n", "Changed");
+        a.setLastModified(time);
+        CatalogSync.Report report = CatalogSync.sync(dir);
+        assertEquals(1, report.getUpdated());
+        assertEquals(0, report.getAdded() + report.getTouched() + report.getRemoved());
+
+        DatabaseService.getEntityManager().clear();
+        Puzzle p = DatabaseService.getPuzzle(a.getAbsolutePath());
+        assertEquals(id, p.getId());
+        assertEquals("LOOPS", p.getCategory().getName());
+        assertEquals(Arrays.asList("second", "third"), hints(p));
+        assertEquals("Changed\n", p.getExpectedOutput());
+        assertEquals(time, p.getLastModified());
+
+        // the old category had no other puzzle
+        assertNull(DatabaseService.getCategory("SIMPLE"));
+    }
+
+    @Test
+    public void testRemovedFileTakesItsPointsAway() throws Exception
+    {
+        File a = puzzle("A", "# Simple\n# A\n", "A");
+        File b = puzzle("B", "# Loops\n# B\n", "B");
+        CatalogSync.sync(dir);
+        Puzzle pa = DatabaseService.getPuzzle(a.getAbsolutePath());
+        Puzzle pb = DatabaseService.getPuzzle(b.getAbsolutePath());
+        User alice = DatabaseService.addUser("alice");
+        User bob = DatabaseService.addUser("bob");
+        record(alice, pa, 10);
+        record(alice, pb, 5);
+        record(bob, pa, 7);
+        DatabaseService.getEntityManager().clear();
+
+        a.delete();
+        CatalogSync.Report report = CatalogSync.sync(dir);
+        assertEquals(1, report.getRemoved());
+        assertEquals(1, report.getUnchanged());
+
+        DatabaseService.getEntityManager().clear();
+        assertNull(DatabaseService.getPuzzle(a.getAbsolutePath()));
+        assertNull(DatabaseService.getCategory("SIMPLE"));
+        alice = DatabaseService.getUser("alice");
+        bob = DatabaseService.getUser("bob");
+        assertEquals(5, alice.getPoints());
+        assertEquals(0, bob.getPoints());
+
+        // the scores of the other puzzle are kept
+        pb = DatabaseService.getPuzzle(b.getAbsolutePath());
+        assertEquals(5, DatabaseService.getScore(alice, pb).getPoints());
+        assertEquals(1, DatabaseService.getScore(alice, pb).getGames());
+
+        List<LeaderboardEntry> top = DatabaseService.getLeaderboard(null, 10);
+        assertEquals("alice", top.get(0).getUsername());
+        assertEquals(5, top.get(0).getPoints());
+        for (LeaderboardEntry e : top)
+            if (e.getUsername().equals("bob"))
+                assertEquals(0, e.getPoints());
+        assertTrue(DatabaseService.getLeaderboard("SIMPLE", 10).isEmpty());
+    }
+
+    private static void record(User u, Puzzle p, long points)
+    {
+        DatabaseService.recordGame(new Game(u, p, points, 0, new GameTelemetry()));
+    }
+
+    private static List<String> hints(Puzzle p)
+    {
+        List<String> ret = new ArrayList<>();
+        for (Hint h : p.getHints())
+            ret.add(h.getHintContent());
+        return ret;
+    }
+
+    /**
+     * (Re)writes a puzzle printing the given text
+     */
+    private File puzzle(String name, String meta, String text) throws IOException
+    {
+        File file = new File(dir, name + ".java");
+        try (FileWriter out = new FileWriter(file))
+        {
+            out.write(meta + "public class " + name + "\n{\n"
+                        + "    public static void main(String[] args)\n    {\n"
+                        + "        System.out.println(\"" + text + "\");\n    }\n}\n");
+        }
+        return file;
+    }
+}
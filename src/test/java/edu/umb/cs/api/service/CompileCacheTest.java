@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.source.Output;
+import java.io.File;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class CompileCacheTest
+{
+    private static final String HELLO
+            = "package foo;\npublic class Hello {\n\tpublic static void main(String[] args)\n"
+            + "\t{\n\t\tSystem.out.println(\"a  b\"); // c  d\n\t}\n}\n";
+
+    @Test
+    public void testNormalize()
+    {
+        String spaced = HELLO.replace("\t", "    ").replace("package foo;", "package bar;");
+        assertEquals(CompileCache.key(HELLO, "Hello"), CompileCache.key(spaced, "Hello"));
+        assertFalse(CompileCache.key(HELLO, "Hello").equals(CompileCache.key(HELLO, "Hello2")));
+
+        // literals, comments and line breaks are significant
+        assertFalse(CompileCache.key(HELLO, "Hello")
+                        .equals(CompileCache.key(HELLO.replace("a  b", "a b"), "Hello")));
+        assertFalse(CompileCache.key(HELLO, "Hello")
+                        .equals(CompileCache.key(HELLO.replace("c  d", "c d"), "Hello")));
+        assertFalse(CompileCache.key(HELLO, "Hello")
+                        .equals(CompileCache.key(HELLO.replace("{\n", "{"), "Hello")));
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        CompileCache cache = new CompileCache(2);
+        assertNull(cache.get(HELLO, "Hello"));
+        cache.put(HELLO, "Hello", new Output("a  b\n", false));
+        assertEquals("a  b\n", cache.get(HELLO.replace("\t", "  "), "Hello").getOuput());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // inconclusive outputs are not kept
+        cache.put("class A {}", "A", new Output("Program took too long", true, false));
+        assertNull(cache.get("class A {}", "A"));
+    }
+
+    @Test
+    public void testEviction()
+    {
+        CompileCache cache = new CompileCache(2);
+        cache.put("class A {}", "A", new Output("A", false));
+        cache.put("class B {}", "B", new Output("B", false));
+        cache.get("class A {}", "A");
+        cache.put("class C {}", "C", new Output("C", false));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("class A {}", "A"));
+        assertNull(cache.get("class B {}", "B"));
+        assertNotNull(cache.get("class C {}", "C"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        File file = File.createTempFile("compile-cache", ".bin");
+        try
+        {
+            CompileCache cache = new CompileCache();
+            cache.put(HELLO, "Hello", new Output("a  b\n", false));
+            cache.put("class A {}", "A", new Output("A.java:1: error: ...", true));
+            cache.save(file);
+
+            CompileCache loaded = new CompileCache();
+            loaded.load(file);
+            assertEquals(2, loaded.size());
+            assertEquals("a  b\n", loaded.get(HELLO, "Hello").getOuput());
+            assertTrue(loaded.get("class A {}", "A").isError());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
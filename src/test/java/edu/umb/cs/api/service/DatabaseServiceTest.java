@@ -21,7 +21,18 @@
 
 package edu.umb.cs.api.service;
 
-import static org.junit.Assert.fail;
+import edu.umb.cs.api.LeaderboardEntry;
+import edu.umb.cs.entity.Category;
+import edu.umb.cs.entity.Game;
+import edu.umb.cs.entity.GameTelemetry;
+import edu.umb.cs.entity.Puzzle;
+import edu.umb.cs.entity.Score;
+import edu.umb.cs.entity.User;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+import javax.persistence.EntityManager;
+import static org.junit.Assert.*;
 import org.junit.*;
 
 /**
@@ -34,19 +45,30 @@ public class DatabaseServiceTest
     {
     }
 
+    private static File dir;
+
     @BeforeClass
     public static void setUpClass() throws Exception
     {
+        DatabaseService.openConnection("test");
+        dir = File.createTempFile("puzzles", "");
+        dir.delete();
+        dir.mkdirs();
     }
 
     @AfterClass
     public static void tearDownClass() throws Exception
     {
+        DatabaseService.closeConnection();
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
     }
     
     @Before
     public void setUp()
     {
+        DatabaseService.deleteAll();
     }
     
     @After
@@ -68,6 +90,79 @@ public class DatabaseServiceTest
         }
     }
     
+    @Test
+    public void testRecordGameUpdatesScore() throws Exception
+    {
+        User alice = DatabaseService.addUser("alice");
+        User bob = DatabaseService.addUser("bob");
+        Puzzle hello = puzzle("Hello", "SIMPLE");
+        Puzzle other = puzzle("Other", "SIMPLE");
+        assertNull(DatabaseService.getScore(alice, hello));
+
+        DatabaseService.recordGame(new Game(alice, hello, 10, 1, new GameTelemetry()));
+        Score score = DatabaseService.getScore(alice, hello);
+        assertEquals(10, score.getPoints());
+        assertEquals(1, score.getGames());
+
+        // playing again adds to the same score
+        DatabaseService.recordGame(new Game(alice, hello, 5, 2, new GameTelemetry()));
+        DatabaseService.getEntityManager().clear();
+        alice = DatabaseService.getUser("alice");
+        hello = DatabaseService.getPuzzle(hello.getFilePath());
+        score = DatabaseService.getScore(alice, hello);
+        assertEquals(15, score.getPoints());
+        assertEquals(2, score.getGames());
+        assertEquals(15, alice.getPoints());
+
+        // other users and puzzles have their own scores
+        assertNull(DatabaseService.getScore(bob, hello));
+        assertNull(DatabaseService.getScore(alice, DatabaseService.getPuzzle(other.getFilePath())));
+        assertEquals(0, DatabaseService.getUser("bob").getPoints());
+    }
+
+    @Test
+    public void testLeaderboard() throws Exception
+    {
+        User alice = DatabaseService.addUser("alice");
+        User bob = DatabaseService.addUser("bob");
+        User carol = DatabaseService.addUser("carol");
+        Puzzle loop1 = puzzle("Loop1", "LOOPS");
+        Puzzle loop2 = puzzle("Loop2", "LOOPS");
+        Puzzle simple = puzzle("Simple", "SIMPLE");
+
+        record(alice, loop1, 10);
+        record(alice, simple, 100);
+        record(bob, loop1, 20);
+        record(bob, loop2, 15);
+        record(carol, loop2, 30);
+        record(carol, loop2, 1);
+
+        // only the points in the category count, best first, at most n
+        List<LeaderboardEntry> loops = DatabaseService.getLeaderboard("LOOPS", 2);
+        assertEquals(2, loops.size());
+        assertEquals("bob", loops.get(0).getUsername());
+        assertEquals(35, loops.get(0).getPoints());
+        assertEquals("carol", loops.get(1).getUsername());
+        assertEquals(31, loops.get(1).getPoints());
+
+        List<LeaderboardEntry> all = DatabaseService.getLeaderboard("LOOPS", 10);
+        assertEquals(3, all.size());
+        assertEquals("alice", all.get(2).getUsername());
+        assertEquals(10, all.get(2).getPoints());
+
+        List<LeaderboardEntry> simples = DatabaseService.getLeaderboard("SIMPLE", 10);
+        assertEquals(1, simples.size());
+        assertEquals("alice", simples.get(0).getUsername());
+
+        // all the categories
+        List<LeaderboardEntry> top = DatabaseService.getLeaderboard(null, 1);
+        assertEquals(1, top.size());
+        assertEquals("alice", top.get(0).getUsername());
+        assertEquals(110, top.get(0).getPoints());
+
+        assertTrue(DatabaseService.getLeaderboard("NO SUCH CATEGORY", 10).isEmpty());
+    }
+    
     @Ignore
     @Test
     public void testRemoveUser()
@@ -91,6 +186,32 @@ public class DatabaseServiceTest
         //TODO:
         fail();
     }
-    
-    
+
+    private static void record(User u, Puzzle p, long points)
+    {
+        DatabaseService.recordGame(new Game(u, p, points, 0, new GameTelemetry()));
+    }
+
+    /**
+     * @return a new (persisted) puzzle, whose source prints its name
+     */
+    private static Puzzle puzzle(String name, String catName) throws Exception
+    {
+        File file = new File(dir, name + ".java");
+        try (FileWriter out = new FileWriter(file))
+        {
+            out.write("# " + catName + "\n# " + name + "\n"
+                        + "public class " + name + "\n{\n"
+                        + "    public static void main(String[] args)\n    {\n"
+                        + "        System.out.println(\"" + name + "\");\n    }\n}\n");
+        }
+
+        EntityManager em = DatabaseService.getEntityManager();
+        em.getTransaction().begin();
+        Category cat = DatabaseService.findOrCreateCategory(catName);
+        Puzzle p = new Puzzle(file.getAbsolutePath(), name, cat);
+        em.persist(p);
+        em.getTransaction().commit();
+        return p;
+    }
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.entity.GameTelemetry;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GameRecorderTest
+{
+    private static GameRecorder.GameResult result(int n)
+    {
+        return new GameRecorder.GameResult("user", n, 10, 0, new GameTelemetry());
+    }
+
+    @Test
+    public void testBoundedQueue()
+    {
+        // not started: nothing is taken off the queue
+        GameRecorder recorder = new GameRecorder(2, 1);
+        assertTrue(recorder.record(result(1)));
+        assertTrue(recorder.record(result(2)));
+        assertFalse(recorder.record(result(3)));
+        assertEquals(2, recorder.getPendingCount());
+        assertEquals(1, recorder.getDroppedCount());
+
+        // what is left is reported, and nothing is taken after shutdown
+        assertFalse(recorder.shutdown(0));
+        assertFalse(recorder.record(result(4)));
+        assertEquals(2, recorder.getDroppedCount());
+        assertEquals(0, recorder.getWrittenCount());
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.api.LeaderboardEntry;
+import edu.umb.cs.entity.*;
+import java.io.File;
+import java.util.*;
+import javax.persistence.EntityManager;
+
+/**
+ * Records 100k synthetic games, then compares a per-category top-10 
+ * computed by walking every user's games (as User.getPoints used to) 
+ * with the leaderboard queries on the Score table.
+ * 
+ * Not a unit test: run its main method. It works on a scratch database
+ * ($objectdb/db/leaderboard-benchmark.odb), which is wiped out first.
+ */
+public class LeaderboardBenchmark
+{
+    private static final int USERS = 1000;
+    private static final int PUZZLES = 100;
+    private static final int GAMES = 100000;
+    private static final int TOP = 10;
+    private static final String CATEGORIES[] = {"SIMPLE", "LOOPS", "RECURSION", "STRINGS"};
+
+    public static void main(String[] args) throws Exception
+    {
+        DatabaseService.openConnection("leaderboard-benchmark");
+        try
+        {
+            DatabaseService.deleteAll();
+            List<Puzzle> puzzles = createPuzzles();
+            List<User> users = new ArrayList<>();
+            for (int n = 0; n < USERS; ++n)
+                users.add(DatabaseService.addUser("user" + n));
+
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            for (int n = 0; n < GAMES; ++n)
+            {
+                Game g = new Game(users.get(random.nextInt(USERS)), puzzles.get(random.nextInt(PUZZLES)));
+                g.setPoint(random.nextInt(100));
+                DatabaseService.recordGame(g);
+            }
+            System.out.printf("recorded %d games in %d ms%n",
+                              GAMES, (System.nanoTime() - start) / 1000000);
+
+            DatabaseService.getEntityManager().clear();
+            start = System.nanoTime();
+            for (String cat : CATEGORIES)
+                byIteration(cat);
+            long iteration = System.nanoTime() - start;
+
+            DatabaseService.getEntityManager().clear();
+            start = System.nanoTime();
+            for (String cat : CATEGORIES)
+                DatabaseService.getLeaderboard(cat, TOP);
+            long query = System.nanoTime() - start;
+
+            for (String cat : CATEGORIES)
+                System.out.println(cat + ": " + DatabaseService.getLeaderboard(cat, TOP));
+            System.out.printf("iterating over games: %d ms, score queries: %d ms%n",
+                              iteration / 1000000, query / 1000000);
+        }
+        finally
+        {
+            DatabaseService.closeConnection();
+        }
+    }
+
+    private static List<Puzzle> createPuzzles() throws Exception
+    {
+        File files[] = new File("puzzles").listFiles();
+        EntityManager em = DatabaseService.getEntityManager();
+        List<Puzzle> puzzles = new ArrayList<>();
+        em.getTransaction().begin();
+        for (int n = 0; n < PUZZLES; ++n)
+        {
+            Category cat = DatabaseService.findOrCreateCategory(CATEGORIES[n % CATEGORIES.length]);
+            Puzzle p = new Puzzle(files[n % files.length].getPath(), "", cat);
+            em.persist(p);
+            puzzles.add(p);
+        }
+        em.getTransaction().commit();
+        return puzzles;
+    }
+
+    /**
+     * The top users of a category, summed up from every game of every user
+     */
+    private static List<LeaderboardEntry> byIteration(String catName)
+    {
+        List<LeaderboardEntry> ret = new ArrayList<>();
+        for (User u : DatabaseService.getAllUsers())
+        {
+            long points = 0;
+            for (Game g : u.getGames())
+                if (g.getPuzzle().getCategory().getName().equals(catName))
+                    points += g.getPoint();
+            ret.add(new LeaderboardEntry(u.getUsername(), points));
+        }
+        Collections.sort(ret, new Comparator<LeaderboardEntry>()
+        {
+            @Override
+            public int compare(LeaderboardEntry a, LeaderboardEntry b)
+            {
+                return Long.compare(b.getPoints(), a.getPoints());
+            }
+        });
+        return ret.subList(0, Math.min(TOP, ret.size()));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.source.MetaData;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PuzzleVerifierTest
+{
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = File.createTempFile("puzzles", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testVerifyAll() throws IOException
+    {
+        MetaData hello = puzzle("Hello", "# Simple\n# Hello world\n",
+                                "System.out.println(\"Hello world\");");
+        MetaData wrong = puzzle("Wrong", "# Simple\n# output\n",
+                                "System.out.println(1 + 1);");
+        MetaData broken = puzzle("Broken", "# Simple\n# output\n",
+                                 "System.out.println(1 / 0);");
+
+        Map<String, PuzzleVerifier.Verification> res
+                = PuzzleVerifier.verifyAll(Arrays.asList(hello, wrong, broken),
+                                           Collections.<String, PuzzleVerifier.Verification>emptyMap());
+
+        PuzzleVerifier.Verification ver = res.get(hello.getPath());
+        assertEquals("Hello world\n", ver.getOutput());
+        assertTrue(ver.matchesMetaData());
+        assertNotNull(ver.getHash());
+
+        // the actual output is kept even if the meta data disagrees
+        assertEquals("2\n", res.get(wrong.getPath()).getOutput());
+        assertFalse(res.get(wrong.getPath()).matchesMetaData());
+
+        assertNull(res.get(broken.getPath()).getOutput());
+        assertNotNull(res.get(broken.getPath()).getHash());
+    }
+
+    @Test
+    public void testUnchangedSourceIsNotRun() throws IOException
+    {
+        MetaData hello = puzzle("Hello", "# Simple\n# Hello world\n",
+                                "System.out.println(\"Hello world\");");
+        PuzzleVerifier.Verification first = PuzzleVerifier.verify(hello, null);
+
+        // an unchanged file gets the old output, even a made-up one
+        PuzzleVerifier.Verification old
+                = new PuzzleVerifier.Verification(first.getHash(), "made up\n", false);
+        assertEquals("made up\n", PuzzleVerifier.verify(hello, old).getOutput());
+
+        hello = puzzle("Hello", "# Simple\n# Hello world\n",
+                       "System.out.println(\"Hello world\"); // changed");
+        PuzzleVerifier.Verification changed = PuzzleVerifier.verify(hello, old);
+        assertFalse(first.getHash().equals(changed.getHash()));
+        assertEquals("Hello world\n", changed.getOutput());
+    }
+
+    private MetaData puzzle(String name, String meta, String statement) throws IOException
+    {
+        File file = new File(dir, name + ".java");
+        try (FileWriter out = new FileWriter(file))
+        {
+            out.write(meta);
+            out.write("public class " + name + "\n{\n"
+                        + "    public static void main(String[] args)\n    {\n"
+                        + "        " + statement + "\n    }\n}\n");
+        }
+        return MetaData.parseMetaData(file.getPath());
+    }
+}
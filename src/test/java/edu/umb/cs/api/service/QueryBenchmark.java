@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.api.service;
+
+import edu.umb.cs.entity.Category;
+import edu.umb.cs.entity.User;
+import javax.persistence.EntityManager;
+
+/**
+ * Compares running the same lookups with a query created from its JPQL
+ * string on every call (as DatabaseService used to) and with the named
+ * queries of the QueryRegistry.
+ * 
+ * Not a unit test: run its main method. It works on a scratch database
+ * ($objectdb/db/query-benchmark.odb), which is wiped out first.
+ */
+public class QueryBenchmark
+{
+    private static final int USERS = 1000;
+    private static final int WARM_UP = 20000;
+    private static final int CALLS = 100000;
+
+    public static void main(String[] args) throws Exception
+    {
+        DatabaseService.openConnection("query-benchmark");
+        try
+        {
+            DatabaseService.deleteAll();
+            for (int n = 0; n < USERS; ++n)
+                DatabaseService.addUser("user" + n);
+            DatabaseService.findOrCreateCategory("SIMPLE");
+
+            final EntityManager em = DatabaseService.getEntityManager();
+            Lookup adHoc = new Lookup()
+            {
+                @Override
+                public int run(int n)
+                {
+                    return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
+                             .setParameter("username", "user" + n % USERS)
+                             .getResultList().size()
+                         + em.createQuery("SELECT c FROM Category c WHERE c.name = :name", Category.class)
+                             .setParameter("name", "SIMPLE")
+                             .getResultList().size();
+                }
+            };
+            Lookup named = new Lookup()
+            {
+                @Override
+                public int run(int n)
+                {
+                    return (DatabaseService.usernameExists("user" + n % USERS) ? 1 : 0)
+                         + (DatabaseService.getCategory("SIMPLE") != null ? 1 : 0);
+                }
+            };
+
+            time("ad hoc", adHoc, WARM_UP);
+            time("named", named, WARM_UP);
+            double before = time("ad hoc", adHoc, CALLS);
+            double after = time("named", named, CALLS);
+            System.out.printf("saved %.0f ns per call (%.1fx)%n", before - after, before / after);
+        }
+        finally
+        {
+            DatabaseService.closeConnection();
+        }
+    }
+
+    private interface Lookup
+    {
+        int run(int n);
+    }
+
+    /**
+     * @return the average time of a call, in nanoseconds
+     */
+    private static double time(String name, Lookup lookup, int calls)
+    {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < calls; ++n)
+            found += lookup.run(n);
+        double perCall = (System.nanoTime() - start) / (double) calls;
+        System.out.printf("%-8s %8.0f ns per call (%d found)%n", name, perCall, found);
+        return perCall;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.parser;
+
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceToken;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Parses all the puzzles (and the test sources) on several threads at once,
+ * and checks that every result is the same as when parsing them one by one
+ */
+public class ConcurrentParseTest
+{
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void testConcurrentParses() throws Exception
+    {
+        final List<byte[]> contents = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        collect(new File("puzzles"), ".java", files);
+        collect(new File("src/test/resources/sources"), ".in", files);
+        for (File f : files)
+        {
+            byte content[] = Files.readAllBytes(f.toPath());
+            try
+            {
+                expected.add(dump(new JavaParser(new ByteArrayInputStream(content))
+                                        .parseJava(BracingStyle.K_AND_R)));
+                contents.add(content);
+            }
+            catch (ParseException | TokenMgrError ex)
+            {
+                // not meant to be parsed
+            }
+        }
+        assertFalse(contents.isEmpty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; ++t)
+            {
+                final int offset = t;
+                results.add(executor.submit(new Callable<List<String>>()
+                {
+                    @Override
+                    public List<String> call() throws Exception
+                    {
+                        List<String> ret = new ArrayList<>();
+                        for (int n = 0; n < ROUNDS * contents.size(); ++n)
+                        {
+                            // each thread goes through the sources in its own order
+                            int i = (n + offset) % contents.size();
+                            ret.add(i + "\n" + dump(ParserSession.get().parse(contents.get(i),
+                                                                              BracingStyle.K_AND_R)));
+                        }
+                        return ret;
+                    }
+                }));
+            }
+
+            for (Future<List<String>> result : results)
+            {
+                for (String actual : result.get(60, TimeUnit.SECONDS))
+                {
+                    int nl = actual.indexOf('\n');
+                    int i = Integer.parseInt(actual.substring(0, nl));
+                    assertEquals(expected.get(i), actual.substring(nl + 1));
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String dump(SourceFile src)
+    {
+        StringBuilder bd = new StringBuilder();
+        bd.append(src.getClassName()).append(' ').append(src.tokenCount()).append('\n');
+        for (int line = 0; line < src.lineCount(); ++line)
+        {
+            for (SourceToken tk : src.getTokens(line))
+                bd.append(tk.kind()).append(':').append(tk.image()).append(' ');
+            bd.append('\n');
+        }
+        return bd.toString();
+    }
+
+    private static void collect(File dir, String suffix, List<File> files)
+    {
+        File children[] = dir.listFiles();
+        if (children == null)
+            return;
+        for (File f : children)
+        {
+            if (f.isDirectory())
+                collect(f, suffix, files);
+            else if (f.getName().endsWith(suffix))
+                files.add(f);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares parsing every source of puzzles/ and src/test/resources/sources
+ * with a new JavaParser on a FileInputStream (as SourceFiles used to) and
+ * with the ParserSession of the thread.
+ * 
+ * Not a unit test: run its main method from the project's directory.
+ */
+public class ParserBenchmark
+{
+    private static final int WARM_UP = 200;
+    private static final int ROUNDS = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        List<File> files = new ArrayList<>();
+        collect(new File("puzzles"), ".java", files);
+        collect(new File("src/test/resources/sources"), ".in", files);
+
+        // only what parses (some test inputs are not meant to)
+        List<File> sources = new ArrayList<>();
+        for (File f : files)
+        {
+            try
+            {
+                ParserSession.get().parse(f, BracingStyle.ALLMAN);
+                sources.add(f);
+            }
+            catch (ParseException | TokenMgrError ex)
+            {
+                System.out.println("skipped " + f + ": " + ex.getMessage().split("\n")[0]);
+            }
+        }
+        System.out.println(sources.size() + " sources");
+
+        Parse fresh = new Parse()
+        {
+            @Override
+            public int run(File f) throws Exception
+            {
+                try (InputStream in = new FileInputStream(f))
+                {
+                    return new JavaParser(in).parseJava(BracingStyle.ALLMAN).tokenCount();
+                }
+            }
+        };
+        Parse session = new Parse()
+        {
+            @Override
+            public int run(File f) throws Exception
+            {
+                return ParserSession.get().parse(f, BracingStyle.ALLMAN).tokenCount();
+            }
+        };
+
+        time("new parser", fresh, sources, WARM_UP);
+        time("session", session, sources, WARM_UP);
+        double before = time("new parser", fresh, sources, ROUNDS);
+        double after = time("session", session, sources, ROUNDS);
+        System.out.printf("saved %.1f us per source (%.2fx)%n", before - after, before / after);
+    }
+
+    private static void collect(File dir, String suffix, List<File> files)
+    {
+        File children[] = dir.listFiles();
+        if (children == null)
+            return;
+        for (File f : children)
+        {
+            if (f.isDirectory())
+                collect(f, suffix, files);
+            else if (f.getName().endsWith(suffix))
+                files.add(f);
+        }
+    }
+
+    private interface Parse
+    {
+        int run(File f) throws Exception;
+    }
+
+    /**
+     * @return the average time of a parse, in microseconds
+     */
+    private static double time(String name, Parse parse, List<File> sources, int rounds)
+                    throws Exception
+    {
+        long tokens = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < rounds; ++n)
+            for (File f : sources)
+                tokens += parse.run(f);
+        double perParse = (System.nanoTime() - start) / 1000.0 / rounds / sources.size();
+        System.out.printf("%-10s %8.1f us per source (%d tokens)%n", name, perParse, tokens);
+        return perParse;
+    }
+}
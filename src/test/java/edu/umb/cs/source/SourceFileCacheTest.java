@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SourceFileCacheTest
+{
+    private static final String SOURCE
+            = "public class Cached\n{\n    public static void main (String[] args)\n"
+            + "    {\n        int d = 0;\n    }\n}\n";
+
+    private static void write(File file, String content) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testHitsAndInvalidation() throws IOException, ParseException
+    {
+        File file = File.createTempFile("cached", ".java");
+        file.deleteOnExit();
+        write(file, SOURCE);
+
+        SourceFileCache cache = new SourceFileCache(2);
+        SourceFile first = cache.get(file, Language.JAVA, BracingStyle.ALLMAN);
+        assertSame(first, cache.get(file, Language.JAVA, BracingStyle.ALLMAN));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // each style is parsed once
+        SourceFile kr = cache.get(file, Language.JAVA, BracingStyle.K_AND_R);
+        assertNotSame(first, kr);
+        assertSame(kr, cache.get(file, Language.JAVA, BracingStyle.K_AND_R));
+
+        // a change on disk is noticed
+        write(file, SOURCE.replace("int d = 0;", "int d = 1;"));
+        file.setLastModified(file.lastModified() + 2000);
+        SourceFile changed = cache.get(file, Language.JAVA, BracingStyle.ALLMAN);
+        assertNotSame(first, changed);
+        assertEquals(3, cache.getMisses());
+
+        // the least recently used entry has been dropped
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.Position;
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceToken;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares JavaSourceFile (a list of lists of tokens) with CompactSourceFile
+ * (flat arrays): heap used by many copies of a large source, and time to
+ * walk all its tokens and its non-whitespace positions.
+ * 
+ * Not a unit test: run its main method.
+ */
+public class CompactSourceFileBenchmark
+{
+    private static final int STATEMENTS = 5000;
+    private static final int COPIES = 50;
+    private static final int WARM_UP = 50;
+    private static final int ROUNDS = 500;
+
+    public static void main(String[] args) throws Exception
+    {
+        SourceFile sample = SyntheticSource.parse(STATEMENTS);
+        System.out.printf("%d lines, %d tokens (%d distinct)%n", sample.lineCount(),
+                          sample.tokenCount(), CompactSourceFile.of(sample).distinctTokenCount());
+
+        // memory: many copies of the source, in each representation
+        List<Object> keep = new ArrayList<>();
+        long before = usedHeap();
+        for (int n = 0; n < COPIES; ++n)
+            keep.add(SyntheticSource.parse(STATEMENTS));
+        long lists = (usedHeap() - before) / COPIES;
+        keep.clear();
+
+        before = usedHeap();
+        for (int n = 0; n < COPIES; ++n)
+            keep.add(CompactSourceFile.of(SyntheticSource.parse(STATEMENTS)));
+        long compact = (usedHeap() - before) / COPIES;
+        keep.clear();
+        System.out.printf("heap per source: lists %d KB, compact %d KB (%.1fx)%n",
+                          lists / 1024, compact / 1024, (double) lists / compact);
+
+        // throughput
+        final SourceFile parsed = sample;
+        final CompactSourceFile flat = CompactSourceFile.of(sample);
+        Walk listTokens = new Walk()
+        {
+            @Override
+            public long run()
+            {
+                long sum = 0;
+                for (int line = 0; line < parsed.lineCount(); ++line)
+                    for (SourceToken tk : parsed.getTokens(line))
+                        sum += tk.image().length();
+                return sum;
+            }
+        };
+        Walk flatTokens = new Walk()
+        {
+            @Override
+            public long run()
+            {
+                long sum = 0;
+                for (int n = 0; n < flat.size(); ++n)
+                    sum += flat.tokenAt(n).image().length();
+                return sum;
+            }
+        };
+        Walk listPositions = new Walk()
+        {
+            @Override
+            public long run()
+            {
+                long sum = 0;
+                for (Position p : parsed.getNonWhitespaces())
+                    sum += parsed.getToken(p.getLine(), p.getPos()).image().length();
+                return sum;
+            }
+        };
+        Walk cursor = new Walk()
+        {
+            @Override
+            public long run()
+            {
+                long sum = 0;
+                CompactSourceFile.Cursor c = flat.nonWhitespaceCursor();
+                while (c.next())
+                    sum += c.token().image().length();
+                return sum;
+            }
+        };
+
+        for (int pass = 0; pass < 2; ++pass)
+        {
+            int rounds = pass == 0 ? WARM_UP : ROUNDS;
+            boolean print = pass == 1;
+            double a = time("tokens, lists", listTokens, rounds, print);
+            double b = time("tokens, compact", flatTokens, rounds, print);
+            double c = time("positions, lists", listPositions, rounds, print);
+            double d = time("positions, cursor", cursor, rounds, print);
+            if (print)
+                System.out.printf("tokens %.2fx, positions %.2fx%n", a / b, c / d);
+        }
+    }
+
+    private interface Walk
+    {
+        long run();
+    }
+
+    /**
+     * @return the average time of a walk, in microseconds
+     */
+    private static double time(String name, Walk walk, int rounds, boolean print)
+    {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < rounds; ++n)
+            sum += walk.run();
+        double perWalk = (System.nanoTime() - start) / 1000.0 / rounds;
+        if (print)
+            System.out.printf("%-18s %8.1f us per walk (%d)%n", name, perWalk, sum);
+        return perWalk;
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int n = 0; n < 3; ++n)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import static org.junit.Assert.*;
+
+/**
+ * The compact representation of each test source must read the same
+ * as the parsed one
+ */
+public class CompactSourceFileTest extends SourceTestBase
+{
+    private static final File PATH = new File("src/test/resources/sources/javaccparse");
+
+    @Override
+    void doTest(File expted, File in) throws FileNotFoundException, IOException
+    {
+        SourceFile src;
+        try
+        {
+            src = SourceFiles.getSourceFile(in, Language.JAVA, BracingStyle.K_AND_R);
+        }
+        catch (ParseException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        CompactSourceFile compact = CompactSourceFile.of(src);
+
+        assertEquals(src.getClassName(), compact.getClassName());
+        assertEquals(src.getStyle(), compact.getStyle());
+        assertEquals(src.tokenCount(), compact.tokenCount());
+        assertEquals(src.lineCount(), compact.lineCount());
+        assertEquals(Utils.toSource(src.getAll()), Utils.toSource(compact.getAll()));
+
+        int index = 0;
+        for (int line = 0; line < src.lineCount(); ++line)
+        {
+            assertEquals(src.tokenCount(line), compact.tokenCount(line));
+            assertEquals(index, compact.lineStart(line));
+            for (int pos = 0; pos < src.tokenCount(line); ++pos, ++index)
+            {
+                SourceToken tk = src.getToken(line, pos);
+                assertSame(tk, compact.getToken(line, pos));
+                assertSame(tk, compact.tokenAt(index));
+                assertEquals(tk.kind(), compact.kindAt(index));
+                assertEquals(line, compact.lineOf(index));
+            }
+        }
+
+        assertEquals(index, compact.size());
+        assertEquals(src.getNonWhitespaces(), compact.getNonWhitespaces());
+        assertTrue(compact.distinctTokenCount() <= compact.tokenCount());
+        int indexes[] = compact.nonWhitespaceIndexes();
+        int lines[] = compact.nonWhitespaceLines();
+        assertEquals(indexes.length, lines.length);
+        for (int n = 0; n < indexes.length; ++n)
+            assertEquals(compact.lineOf(indexes[n]), lines[n]);
+
+        // shuffling reads it like any other source
+        ShuffledSource shuffled = SimpleShuffler.INSTANCE.shuffle(compact, 3);
+        assertEquals(3, shuffled.removedCount());
+        assertEquals(Utils.toSource(src.getAll()), Utils.toSource(compact.getAll()));
+    }
+
+    @Override
+    File getPath()
+    {
+        return PATH;
+    }
+}
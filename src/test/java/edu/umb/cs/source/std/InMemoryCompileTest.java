@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import com.google.common.io.CharStreams;
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.source.Language;
+import edu.umb.cs.source.Output;
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceFiles;
+import java.io.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Same cases as CompileExecuteTest, but compiled and run in process
+ */
+public class InMemoryCompileTest extends SourceTestBase
+{
+    private static final File PATH = new File ("src/test/resources/sources/compile");
+
+    @Override
+    void doTest(File expted, File in) throws FileNotFoundException, IOException
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+
+        String exp = CharStreams.toString(new InputStreamReader(new FileInputStream(expted)));
+        SourceFile src;
+        try
+        {
+            src = SourceFiles.getSourceFile(in, Language.JAVA, BracingStyle.ALLMAN);
+        }
+        catch (ParseException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+
+        Output actual = InMemoryCompileEngine.INSTANCE.compile(Utils.toSource(src.getAll()),
+                                                               src.getClassName());
+        assertFalse(actual.getOuput(), actual.isError());
+        assertEquals(exp, actual.getOuput());
+
+        // a broken source should report the compiler's errors
+        Output broken = InMemoryCompileEngine.INSTANCE.compile("public class " + src.getClassName() + " {",
+                                                               src.getClassName());
+        assertTrue(broken.isError());
+        assertTrue(broken.getOuput().contains("error"));
+    }
+
+    @Test
+    public void testRunsDoNotWaitForEachOther() throws Exception
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+
+        Thread loop = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                InMemoryCompileEngine.INSTANCE.compile(
+                        "public class Loop { public static void main(String[] a) { while (true); } }",
+                        "Loop");
+            }
+        };
+        loop.start();
+        try
+        {
+            // let Loop get past compiling
+            Thread.sleep(1000);
+            long start = System.nanoTime();
+            Output out = InMemoryCompileEngine.INSTANCE.compile(
+                    "public class Hi { public static void main(String[] a) { System.out.println(\"hi\"); } }",
+                    "Hi");
+            long millis = (System.nanoTime() - start) / 1000000;
+            assertEquals("hi\n", out.getOuput());
+            assertTrue("waited " + millis + " ms", millis < InMemoryCompileEngine.RUN_TIME_OUT / 2);
+        }
+        finally
+        {
+            loop.join();
+        }
+    }
+
+    @Test
+    public void testLeftoverThreadsAreStopped() throws Exception
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+
+        Output out = InMemoryCompileEngine.INSTANCE.compile(
+                "public class Leaves\n{\n"
+                    + "    public static void main(String[] a)\n    {\n"
+                    + "        new Thread(\"leftover\") { public void run() { while (true); } }.start();\n"
+                    + "        System.out.println(\"bye\");\n    }\n}\n",
+                "Leaves");
+        assertEquals("bye\n", out.getOuput());
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            assertFalse(thread.getName().equals("leftover") && thread.isAlive());
+    }
+
+    @Test
+    public void testGroupsAreReleased() throws Exception
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+
+        ThreadGroup parent = Thread.currentThread().getThreadGroup();
+        int before = parent.activeGroupCount();
+        for (int n = 0; n < 20; ++n)
+        {
+            Output out = InMemoryCompileEngine.INSTANCE.compile(
+                    "public class Released\n{\n"
+                        + "    public static void main(String[] a) throws Exception\n    {\n"
+                        + "        Thread t = new Thread() { public void run() { System.out.println(\"bye\"); } };\n"
+                        + "        t.start();\n        t.join();\n    }\n}\n",
+                    "Released");
+            assertEquals("bye\n", out.getOuput());
+        }
+        assertTrue(parent.activeGroupCount() <= before);
+    }
+
+    @Override
+    File getPath()
+    {
+        return PATH;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.source.*;
+import edu.umb.cs.source.SyntaxCheck.Status;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class JavaSyntaxCheckerTest
+{
+    private static final File PATHS[] = { new File("src/test/resources/sources/javaccparse"),
+                                          new File("src/test/resources/sources/compile"),
+                                          new File("src/test/resources/sources/shuffler") };
+
+    @Test
+    public void testOriginalsAreValid() throws Exception
+    {
+        for (List<SourceToken> tokens : allSources())
+            assertEquals(Status.VALID, JavaSyntaxChecker.check(tokens).getStatus());
+    }
+
+    @Test
+    public void testEmptySlots() throws Exception
+    {
+        for (List<SourceToken> tokens : allSources())
+        {
+            // every prefix of a valid program is fine
+            for (int n = 0; n < tokens.size(); ++n)
+            {
+                if (!isRemovable(tokens.get(n)))
+                    continue;
+                List<SourceToken> partial = new ArrayList<>(tokens);
+                partial.set(n, EmptyToken.INSTANCE);
+                SyntaxCheck check = JavaSyntaxChecker.check(partial);
+                assertEquals(check.toString(), Status.INCOMPLETE, check.getStatus());
+                assertEquals(n, check.getTokenIndex());
+            }
+        }
+    }
+
+    @Test
+    public void testMisplacedToken() throws Exception
+    {
+        for (List<SourceToken> tokens : allSources())
+        {
+            // drop the first semicolon (at the end of a statement or an import)
+            int semi = indexOf(tokens, ";");
+            if (semi < 0)
+                continue;
+            List<SourceToken> broken = new ArrayList<>(tokens);
+            broken.set(semi, SpaceToken.INSTANCE);
+
+            SyntaxCheck check = JavaSyntaxChecker.check(broken);
+            assertEquals(Status.INVALID, check.getStatus());
+            assertTrue(check.toString(), check.getTokenIndex() > semi);
+
+            // the same error is found with empty slots after it
+            broken.set(tokens.size() - 1, EmptyToken.INSTANCE);
+            assertEquals(check.getTokenIndex(),
+                         JavaSyntaxChecker.check(broken).getTokenIndex());
+        }
+    }
+
+    private static List<List<SourceToken>> allSources() throws Exception
+    {
+        List<List<SourceToken>> ret = new ArrayList<>();
+        for (File dir : PATHS)
+            for (File in : dir.listFiles(new FilenameFilter()
+                                        {
+                                            @Override
+                                            public boolean accept(File dir, String name)
+                                            {
+                                                return name.endsWith(".in");
+                                            }
+                                        }))
+            {
+                SourceFile src = SourceFiles.getSourceFile(in, Language.JAVA, BracingStyle.ALLMAN);
+                List<SourceToken> tokens = new ArrayList<>();
+                for (List<SourceToken> line : src.getAll())
+                    tokens.addAll(line);
+                ret.add(tokens);
+            }
+        return ret;
+    }
+
+    private static boolean isRemovable(SourceToken tk)
+    {
+        return tk.kind() != SourceTokenKind.SPACE && tk.kind() != SourceTokenKind.TAB;
+    }
+
+    private static int indexOf(List<SourceToken> tokens, String image)
+    {
+        for (int n = 0; n < tokens.size(); ++n)
+            if (tokens.get(n).image().equals(image))
+                return n;
+        return -1;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.Position;
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceToken;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares SimpleShuffler (partial Fisher-Yates over an int[]) with the
+ * previous way of picking tokens (removing them from a list of positions,
+ * and copying the lines), on a synthetic source of about 10k tokens.
+ * 
+ * Not a unit test: run its main method.
+ */
+public class SimpleShufflerBenchmark
+{
+    private static final int STATEMENTS = 800;
+    private static final int WARM_UP = 2000;
+    private static final int ROUNDS = 20000;
+    private static final int PERCENTS[] = {5, 20, 50};
+
+    public static void main(String[] args) throws Exception
+    {
+        SourceFile parsed = SyntheticSource.parse(STATEMENTS);
+        CompactSourceFile compact = CompactSourceFile.of(parsed);
+        int removable = parsed.getNonWhitespaces().size();
+        System.out.printf("%d lines, %d tokens (%d removable)%n", parsed.lineCount(),
+                          parsed.tokenCount(), removable);
+
+        Random rand = new Random(42);
+        for (int pass = 0; pass < 2; ++pass)
+        {
+            int rounds = pass == 0 ? WARM_UP : ROUNDS;
+            boolean print = pass == 1;
+            for (int percent : PERCENTS)
+            {
+                int toRemove = removable * percent / 100;
+                double a = time("list removal", parsed, toRemove, rounds, rand, true, print);
+                double b = time("fisher-yates", parsed, toRemove, rounds, rand, false, print);
+                double c = time("fisher-yates, compact", compact, toRemove, rounds, rand, false, print);
+                if (print)
+                    System.out.printf("%d%% (%d tokens): %.2fx, compact %.2fx%n%n",
+                                      percent, toRemove, a / b, a / c);
+            }
+        }
+    }
+
+    /**
+     * @return the average time of a shuffle, in microseconds
+     */
+    private static double time(String name, SourceFile src, int toRemove,
+                               int rounds, Random rand, boolean old, boolean print)
+    {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < rounds; ++n)
+            sum += old
+                    ? listRemoval(src, toRemove, rand)
+                    : SimpleShuffler.INSTANCE.shuffle(src, toRemove, rand).removedCount();
+        double perShuffle = (System.nanoTime() - start) / 1000.0 / rounds;
+        if (print)
+            System.out.printf("%-22s %8.1f us per shuffle (%d)%n", name, perShuffle, sum);
+        return perShuffle;
+    }
+
+    /**
+     * How SimpleShuffler used to pick the tokens
+     * @return number of tokens removed
+     */
+    private static int listRemoval(SourceFile src, int toRemove, Random rand)
+    {
+        List<List<SourceToken>> newSrc = SimpleShuffler.buildList(src);
+        boolean copied[] = new boolean[newSrc.size()];
+        List<SourceToken> removed = new ArrayList<>(toRemove);
+        List<Position> positions = new ArrayList<>(toRemove);
+        ArrayList<Position> removable = new ArrayList<>(src.getNonWhitespaces());
+        toRemove = Math.min(toRemove, removable.size());
+
+        for (int n = 0; n < toRemove; ++n)
+        {
+            Position pos = removable.remove(rand.nextInt(removable.size()));
+            List<SourceToken> curLine = newSrc.get(pos.getLine());
+            if (!copied[pos.getLine()])
+            {
+                curLine = new ArrayList<>(curLine);
+                newSrc.set(pos.getLine(), curLine);
+                copied[pos.getLine()] = true;
+            }
+            removed.add(curLine.set(pos.getPos(), EmptyToken.INSTANCE));
+            positions.add(pos);
+        }
+        return removed.size();
+    }
+}
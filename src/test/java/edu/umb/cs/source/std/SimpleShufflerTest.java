@@ -27,6 +27,7 @@ import edu.umb.cs.source.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -54,12 +55,27 @@ public class SimpleShufflerTest extends SourceTestBase
             fail("parse error");
             return;
         }
+        String original = Utils.toSource(srcFile.getAll());
+        int removable = srcFile.getNonWhitespaces().size();
+
         // remove a few tokens
         int toRemove = 6; // percent
         ShuffledSource shuffled = SimpleShuffler.INSTANCE.shuffle(srcFile, toRemove);
         List<SourceToken> removed = shuffled.getRemovedTokens();
 
         assertEquals(toRemove, removed.size());
+        // the (cached) source is left as it was
+        assertEquals(original, Utils.toSource(srcFile.getAll()));
+        assertEquals(removable, srcFile.getNonWhitespaces().size());
+        assertEquals(removable - toRemove, shuffled.totalRemovable());
+        checkRemoved(srcFile, shuffled);
+
+        // same for a compact source (whose positions are an int[])
+        CompactSourceFile compact = CompactSourceFile.of(srcFile);
+        checkRemoved(compact, SimpleShuffler.INSTANCE.shuffle(compact, toRemove));
+        // every token, at most
+        checkRemoved(srcFile, SimpleShuffler.INSTANCE.shuffle(srcFile, removable + 1));
+        assertEquals(original, Utils.toSource(srcFile.getAll()));
         // TODO: for now, just print out the removed tokens and the source
         System.out.println("Testing file: " + in.getAbsolutePath());
         System.out.println("removed tokens: " + removed);
@@ -74,6 +90,24 @@ public class SimpleShufflerTest extends SourceTestBase
         }
     }
 
+    /**
+     * Each removed token came from a distinct position, which is now empty
+     */
+    private static void checkRemoved(SourceFile src, ShuffledSource shuffled)
+    {
+        SourceFile board = shuffled.getShuffledSource();
+        List<Position> positions = shuffled.getRemovedPositions();
+        List<SourceToken> removed = shuffled.getRemovedTokens();
+        assertEquals(removed.size(), new HashSet<>(positions).size());
+        for (int n = 0; n < positions.size(); ++n)
+        {
+            Position pos = positions.get(n);
+            assertSame(src.getToken(pos.getLine(), pos.getPos()), removed.get(n));
+            assertSame(EmptyToken.INSTANCE, board.getToken(pos.getLine(), pos.getPos()));
+        }
+        assertEquals(src.lineCount(), board.lineCount());
+    }
+
     @Override
     File getPath()
     {
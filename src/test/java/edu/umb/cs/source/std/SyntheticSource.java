@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.parser.ParserSession;
+import edu.umb.cs.source.SourceFile;
+
+/**
+ * Generates (and parses) large sources for the benchmarks
+ */
+class SyntheticSource
+{
+    /**
+     * @param statements number of statements in main
+     *                   (each is about 8 tokens, plus indentation)
+     * @return the text of a class whose main has that many statements
+     */
+    static String text(int statements)
+    {
+        StringBuilder bd = new StringBuilder("public class Synthetic\n{\n")
+                .append("    public static void main (String[] args)\n    {\n")
+                .append("        int v0 = 0;\n");
+        for (int n = 1; n < statements; ++n)
+        {
+            if (n % 2 == 1)
+                bd.append("        int v").append(n).append(" = v").append(n - 1)
+                  .append(" + ").append(n).append(";\n");
+            else
+                bd.append("        v").append(n - 1).append(" = v").append(n - 2)
+                  .append(" * ").append(n).append(";\n");
+        }
+        return bd.append("    }\n}\n").toString();
+    }
+
+    static SourceFile parse(int statements) throws ParseException
+    {
+        return ParserSession.get().parse(text(statements), ParserSession.DEFAULT_TAB_SIZE,
+                                         BracingStyle.ALLMAN);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.parser.BracingStyle;
+import edu.umb.cs.parser.ParseException;
+import edu.umb.cs.parser.ParserSession;
+import edu.umb.cs.source.SourceFile;
+import edu.umb.cs.source.SourceToken;
+import edu.umb.cs.source.SourceTokenKind;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TokenPoolTest
+{
+    private static final String SOURCE
+            = "public class Pool\n{\n    public static void main (String[] args)\n"
+            + "    {\n        int d = 0;\n        d = d + 0;\n    }\n}\n";
+
+    @Test
+    public void testSharedTokens()
+    {
+        assertSame(TokenPool.keyword("public"), TokenPool.keyword("public"));
+        assertSame(TokenPool.operator("+"), OperatorToken.getOperator("+"));
+        assertSame(TokenPool.separator(";"), SeparatorToken.getSep(";"));
+        assertEquals(SourceTokenKind.KEYWORD, TokenPool.keyword("while").kind());
+        assertEquals(SourceTokenKind.OPERATOR, TokenPool.operator(".").kind());
+        assertEquals(SourceTokenKind.SEPARATOR, TokenPool.separator(".").kind());
+    }
+
+    @Test
+    public void testInterned() throws ParseException
+    {
+        SourceFile src = ParserSession.get().parse(SOURCE, ParserSession.DEFAULT_TAB_SIZE,
+                                                   BracingStyle.ALLMAN);
+
+        // one instance per image (and kind) within the source
+        Map<String, SourceToken> seen = new HashMap<>();
+        for (int line = 0; line < src.lineCount(); ++line)
+        {
+            for (SourceToken tk : src.getTokens(line))
+            {
+                String key = tk.kind() + ":" + tk.image();
+                SourceToken prev = seen.put(key, tk);
+                assertTrue(key, prev == null || prev == tk);
+            }
+        }
+        assertTrue(seen.containsKey("IDENTIFIER:d"));
+        assertTrue(seen.containsKey("NUM_LITERAL:0"));
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2013 Tokanagrammar Team
+ *
+ * This is a jigsaw-like puzzle game,
+ * except each piece is token from a source file,
+ * and the 'complete picture' is the program.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.umb.cs.source.std;
+
+import edu.umb.cs.source.Output;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class WorkerPoolTest
+{
+    private static final long TIME_OUT = 2000;
+    private static final int OUTPUT_CAP = 1024;
+
+    private File dir;
+    private WorkerPool pool;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("workers").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (pool != null)
+            pool.shutdown();
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testWorkerIsReplacedAfterMaxRuns() throws IOException
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+        pool = new WorkerPool(1, 2, TIME_OUT, OUTPUT_CAP);
+        Map<String, byte[]> pid = program("Pid",
+                "System.out.print(java.lang.management.ManagementFactory.getRuntimeMXBean().getName());");
+
+        String first = pool.execute(pid, "Pid").getOuput();
+        assertEquals(first, pool.execute(pid, "Pid").getOuput());
+        // the third run is in a new worker
+        Output third = pool.execute(pid, "Pid");
+        assertFalse(third.isError());
+        assertFalse(first.equals(third.getOuput()));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testCrashedWorkerIsReplaced() throws IOException
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+        pool = new WorkerPool(1, 10, TIME_OUT, OUTPUT_CAP);
+
+        Output crash = pool.execute(program("Crash", "Runtime.getRuntime().halt(3);"), "Crash");
+        assertTrue(crash.isError());
+        assertFalse(crash.isConclusive());
+
+        Output hello = pool.execute(program("Hello", "System.out.println(\"hello\");"), "Hello");
+        assertEquals("hello\n", hello.getOuput());
+        assertFalse(hello.isError());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testTimeOut() throws IOException
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+        pool = new WorkerPool(1, 10, TIME_OUT, OUTPUT_CAP);
+
+        long start = System.nanoTime();
+        Output loop = pool.execute(program("Loop", "while (true);"), "Loop");
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue(loop.isError());
+        assertFalse(loop.isConclusive());
+        assertTrue(loop.getOuput().contains("took too long"));
+        assertTrue("took " + millis + " ms", millis < TIME_OUT + 2000);
+
+        // the worker that ran it is replaced
+        Output hello = pool.execute(program("Hello", "System.out.println(\"hello\");"), "Hello");
+        assertEquals("hello\n", hello.getOuput());
+    }
+
+    @Test
+    public void testExitStatus() throws IOException
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+        pool = new WorkerPool(1, 10, TIME_OUT, OUTPUT_CAP);
+
+        Output ok = pool.execute(program("ExitOk", "System.out.println(\"ok\"); System.exit(0);"), "ExitOk");
+        assertFalse(ok.isError());
+        assertEquals("ok\n", ok.getOuput());
+
+        Output failed = pool.execute(program("ExitFailed", "System.out.println(\"no\"); System.exit(1);"),
+                                     "ExitFailed");
+        assertTrue(failed.isError());
+        assertTrue(failed.getOuput().startsWith("no\n"));
+    }
+
+    @Test
+    public void testShutdownWhileWaiting() throws Exception
+    {
+        if (!InMemoryCompileEngine.isAvailable())
+            return;
+        pool = new WorkerPool(1, 10, TIME_OUT, OUTPUT_CAP);
+        final Map<String, byte[]> sleep = program("Sleep", "Thread.sleep(1500);");
+
+        // keeps the only worker busy
+        Thread busy = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                pool.execute(sleep, "Sleep");
+            }
+        };
+        busy.start();
+        Thread.sleep(300);
+
+        final Output waited[] = new Output[1];
+        Thread waiting = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                waited[0] = pool.execute(sleep, "Sleep");
+            }
+        };
+        waiting.start();
+        Thread.sleep(300);
+        pool.shutdown();
+
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+        assertFalse(waited[0].isConclusive());
+        busy.join();
+    }
+
+    /**
+     * @return the class files of a class whose main runs the given statement
+     */
+    private Map<String, byte[]> program(String outer, String statement) throws IOException
+    {
+        File src = new File(dir, outer + ".java");
+        Files.write(src.toPath(),
+                    ("public class " + outer + "\n{\n"
+                        + "    public static void main(String[] args) throws Exception\n    {\n"
+                        + "        " + statement + "\n    }\n}\n").getBytes("UTF-8"));
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, javac.run(null, null, null, "-d", dir.getPath(), src.getPath()));
+
+        Map<String, byte[]> classes = new HashMap<>();
+        classes.put(outer, Files.readAllBytes(new File(dir, outer + ".class").toPath()));
+        return classes;
+    }
+}